@@ -19,6 +19,8 @@ package com.stfalcon.chatkit.commons;
 import android.support.v7.widget.RecyclerView;
 import android.view.View;
 
+import java.util.List;
+
 /**
  * Base ViewHolder
  */
@@ -26,6 +28,17 @@ public abstract class ViewHolder<DATA> extends RecyclerView.ViewHolder {
 
     public abstract void onBind(DATA data);
 
+    /**
+     * Called instead of {@link #onBind(Object)} when item was changed partially and change payloads
+     * were passed to adapter. Default implementation ignores payloads and rebinds the whole item.
+     *
+     * @param data     bound data.
+     * @param payloads non-empty list of payloads.
+     */
+    public void onBind(DATA data, List<Object> payloads) {
+        onBind(data);
+    }
+
     public ViewHolder(View itemView) {
         super(itemView);
     }
@@ -37,6 +37,25 @@ public interface MessageContentType extends IMessage {
         String getImageUrl();
     }
 
+    /**
+     * Custom content type which message reports itself. Such messages are matched with registered type
+     * directly, without asking {@link MessageHolders.ContentChecker} about every type.
+     */
+    interface Typed extends MessageContentType {
+
+        /**
+         * Value for messages without custom content, they are shown as default text or image messages.
+         */
+        int NO_CONTENT_TYPE = 0;
+
+        /**
+         * Returns content type registered in {@link MessageHolders} or {@link #NO_CONTENT_TYPE}.
+         *
+         * @return content type id.
+         */
+        int getContentType();
+    }
+
     // other default types will be here
 
 }
@@ -25,6 +25,7 @@ import android.support.v7.widget.SimpleItemAnimator;
 import android.util.AttributeSet;
 
 import com.stfalcon.chatkit.commons.models.IDialog;
+import com.stfalcon.chatkit.utils.DateChangesReceiver;
 
 /**
  * Component for displaying list of dialogs
@@ -56,6 +57,13 @@ public class DialogsList extends RecyclerView {
 
         setLayoutManager(layout);
         setItemAnimator(animator);
+        DateChangesReceiver.register(getContext());
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        DateChangesReceiver.unregister(getContext());
+        super.onDetachedFromWindow();
     }
 
     /**
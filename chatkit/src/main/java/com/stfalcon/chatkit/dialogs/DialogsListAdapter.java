@@ -34,13 +34,16 @@ import com.stfalcon.chatkit.commons.ViewHolder;
 import com.stfalcon.chatkit.commons.models.IDialog;
 import com.stfalcon.chatkit.commons.models.IMessage;
 import com.stfalcon.chatkit.utils.DateFormatter;
+import com.stfalcon.chatkit.utils.IngestionQueue;
 
 import java.lang.reflect.Constructor;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import static android.view.View.GONE;
 import static android.view.View.VISIBLE;
@@ -62,6 +65,27 @@ public class DialogsListAdapter<DIALOG extends IDialog>
     private OnDialogViewLongClickListener<DIALOG> onDialogViewLongClickListener;
     private DialogListStyle dialogStyle;
     private DateFormatter.Formatter datesFormatter;
+    private final IngestionQueue<DIALOG> ingestionQueue = new IngestionQueue<>(new IngestionQueue.Target<DIALOG>() {
+        @Override
+        public String getId(DIALOG dialog) {
+            return dialog.getId();
+        }
+
+        @Override
+        public void add(List<DIALOG> dialogs) {
+            upsertItems(dialogs);
+        }
+
+        @Override
+        public void update(DIALOG dialog) {
+            updateItemById(dialog);
+        }
+
+        @Override
+        public void delete(String id) {
+            deleteById(id);
+        }
+    });
 
     /**
      * For default list item layout and view holder
@@ -189,7 +213,7 @@ public class DialogsListAdapter<DIALOG extends IDialog>
             }
             int curSize = items.size();
             items.addAll(newItems);
-            notifyItemRangeInserted(curSize, items.size());
+            notifyItemRangeInserted(curSize, newItems.size());
         }
     }
 
@@ -277,6 +301,38 @@ public class DialogsListAdapter<DIALOG extends IDialog>
         }
     }
 
+    /**
+     * Updates dialogs which are already in list and adds others to the end of list in one pass.
+     *
+     * @param newItems dialogs to update or add
+     */
+    public void upsertItems(List<DIALOG> newItems) {
+        Map<String, DIALOG> byId = new LinkedHashMap<>();
+        for (DIALOG item : newItems) {
+            byId.put(item.getId(), item);
+        }
+        for (int i = 0; i < items.size() && !byId.isEmpty(); i++) {
+            DIALOG item = byId.remove(items.get(i).getId());
+            if (item != null) {
+                items.set(i, item);
+                notifyItemChanged(i);
+            }
+        }
+        if (!byId.isEmpty()) {
+            addItems(new ArrayList<>(byId.values()));
+        }
+    }
+
+    /**
+     * Returns queue which accepts new, updated and deleted dialogs from any thread. Queued changes
+     * are applied once per frame, new dialogs are added to the end of list.
+     *
+     * @return ingestion queue of this adapter
+     */
+    public IngestionQueue<DIALOG> getIngestionQueue() {
+        return ingestionQueue;
+    }
+
     /**
      * Find an item by its id
      *
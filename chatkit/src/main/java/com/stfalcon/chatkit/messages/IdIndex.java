@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright 2016 stfalcon.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.stfalcon.chatkit.messages;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from message id to non-negative int. Unlike {@code HashMap<String, Integer>}
+ * it doesn't allocate an entry and a boxed value for every message.
+ */
+final class IdIndex {
+
+    static final int NOT_FOUND = -1;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private String[] keys;
+    private int[] values;
+    private int size;
+
+    IdIndex() {
+        keys = new String[MIN_CAPACITY];
+        values = new int[MIN_CAPACITY];
+    }
+
+    int get(String key) {
+        if (key == null) return NOT_FOUND;
+        int mask = keys.length - 1;
+        for (int i = slot(key, mask); keys[i] != null; i = (i + 1) & mask) {
+            if (keys[i].equals(key)) return values[i];
+        }
+        return NOT_FOUND;
+    }
+
+    void put(String key, int value) {
+        if (key == null) return;
+        if ((size + 1) * 4 > keys.length * 3) {
+            resize(keys.length << 1);
+        }
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        while (keys[i] != null) {
+            if (keys[i].equals(key)) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        size++;
+    }
+
+    /*
+     * Removes the key only if it's still mapped to the value, so removing a message
+     * doesn't drop the entry of another message with the same id.
+     * */
+    void remove(String key, int value) {
+        if (key == null) return;
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        while (keys[i] != null && !keys[i].equals(key)) {
+            i = (i + 1) & mask;
+        }
+        if (keys[i] == null || values[i] != value) return;
+
+        // shift back the following entries of the cluster, so lookups don't need tombstones
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (keys[j] == null) break;
+            int k = slot(keys[j], mask);
+            if (i <= j ? (i < k && k <= j) : (i < k || k <= j)) continue;
+            keys[i] = keys[j];
+            values[i] = values[j];
+            i = j;
+        }
+        keys[i] = null;
+        size--;
+    }
+
+    void clear() {
+        if (keys.length > MIN_CAPACITY) {
+            keys = new String[MIN_CAPACITY];
+            values = new int[MIN_CAPACITY];
+        } else {
+            Arrays.fill(keys, null);
+        }
+        size = 0;
+    }
+
+    private void resize(int capacity) {
+        String[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new String[capacity];
+        values = new int[capacity];
+        int mask = capacity - 1;
+        for (int n = 0; n < oldKeys.length; n++) {
+            if (oldKeys[n] == null) continue;
+            int i = slot(oldKeys[n], mask);
+            while (keys[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = oldKeys[n];
+            values[i] = oldValues[n];
+        }
+    }
+
+    private static int slot(String key, int mask) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
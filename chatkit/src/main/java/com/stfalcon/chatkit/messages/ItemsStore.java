@@ -0,0 +1,397 @@
+/*******************************************************************************
+ * Copyright 2016 stfalcon.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.stfalcon.chatkit.messages;
+
+import com.stfalcon.chatkit.commons.models.IMessage;
+
+import java.util.Arrays;
+
+/**
+ * Items of {@link MessagesListAdapter} (messages and date headers) kept in parallel arrays instead
+ * of an object per item: item references, day keys, cached view types, index handles and bitsets
+ * for selection and header flags. Arrays are circular, so adding and removing at both ends is
+ * O(1) amortized and inserting or removing in the middle moves the shorter side only.
+ * <p>
+ * Message positions are looked up by id in O(1). Each indexed message owns a handle, the handle keeps
+ * position of the message as {@code key - offset}, so moving one end of the list only changes the offset.
+ * Memory per item is about 4 ints and 2 bits plus an id index slot, with no allocations after arrays grew.
+ */
+final class ItemsStore {
+
+    static final int NO_VIEW_TYPE = Integer.MIN_VALUE;
+
+    private static final int MIN_CAPACITY = 16;
+    private static final int NO_HANDLE = -1;
+
+    private Object[] items;
+    private int[] dayKeys;
+    private int[] viewTypes;
+    private int[] handles;
+    private long[] selected;
+    private long[] headers;
+    private int head;
+    private int size;
+    private int headersCount;
+    private int selectedCount;
+    private int version;
+
+    private final IdIndex index = new IdIndex();
+    private int[] handleKeys;
+    private int handlesCount;
+    private int freeHandle = NO_HANDLE;
+    private int offset;
+
+    ItemsStore() {
+        allocate(MIN_CAPACITY);
+        handleKeys = new int[MIN_CAPACITY];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    Object get(int position) {
+        return items[physical(position)];
+    }
+
+    boolean isHeader(int position) {
+        return getBit(headers, physical(position));
+    }
+
+    int getHeadersCount() {
+        return headersCount;
+    }
+
+    int getDayKey(int position) {
+        return dayKeys[physical(position)];
+    }
+
+    void setDayKey(int position, int dayKey) {
+        dayKeys[physical(position)] = dayKey;
+    }
+
+    int getViewType(int position) {
+        return viewTypes[physical(position)];
+    }
+
+    void setViewType(int position, int viewType) {
+        viewTypes[physical(position)] = viewType;
+    }
+
+    void invalidateViewTypes() {
+        Arrays.fill(viewTypes, NO_VIEW_TYPE);
+    }
+
+    boolean isSelected(int position) {
+        return getBit(selected, physical(position));
+    }
+
+    void setSelected(int position, boolean isSelected) {
+        int slot = physical(position);
+        if (getBit(selected, slot) != isSelected) {
+            setBit(selected, slot, isSelected);
+            selectedCount += isSelected ? 1 : -1;
+        }
+    }
+
+    int getSelectedCount() {
+        return selectedCount;
+    }
+
+    /**
+     * Returns the first selected position starting from the given one, or {@code -1}.
+     * Words of the selection bitset without selected items are skipped at once.
+     */
+    int nextSelected(int fromPosition) {
+        if (selectedCount == 0) return -1;
+        int capacity = items.length;
+        int position = Math.max(fromPosition, 0);
+        while (position < size) {
+            int slot = physical(position);
+            long word = selected[slot >> 6] & (-1L << slot);
+            int wordEnd = Math.min((slot | 63) + 1, capacity);
+            if (word != 0) {
+                int found = (slot & ~63) + Long.numberOfTrailingZeros(word);
+                if (found < wordEnd) {
+                    position += found - slot;
+                    return position < size ? position : -1;
+                }
+            }
+            position += wordEnd - slot;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns position of the message with the given id or {@code -1}.
+     */
+    int indexOf(String id) {
+        int handle = index.get(id);
+        return handle == IdIndex.NOT_FOUND ? -1 : handleKeys[handle] - offset;
+    }
+
+    /**
+     * Returns the counter which is changed by every structural modification: items added, removed or cleared.
+     * Replacing an item with {@link #set(int, Object, int, int)} doesn't change it.
+     */
+    int getVersion() {
+        return version;
+    }
+
+    void add(int position, Object item, int dayKey, int viewType) {
+        checkIndex(position, size + 1);
+        if (size == items.length) {
+            grow();
+        }
+        int mask = items.length - 1;
+        if (position < size - position) {
+            head = (head - 1) & mask;
+            offset--;
+            for (int i = 0; i < position; i++) {
+                moveSlot((head + i + 1) & mask, (head + i) & mask, -1);
+            }
+        } else {
+            for (int i = size; i > position; i--) {
+                moveSlot((head + i - 1) & mask, (head + i) & mask, 1);
+            }
+        }
+        size++;
+        fillSlot(position, item, dayKey, viewType);
+        version++;
+    }
+
+    void set(int position, Object item, int dayKey, int viewType) {
+        checkIndex(position, size);
+        release(position, position + 1);
+        fillSlot(position, item, dayKey, viewType);
+    }
+
+    void remove(int position) {
+        removeRange(position, position + 1);
+    }
+
+    void removeRange(int fromPosition, int toPosition) {
+        if (fromPosition >= toPosition) return;
+        checkIndex(fromPosition, size);
+        checkIndex(toPosition - 1, size);
+        release(fromPosition, toPosition);
+        closeGap(fromPosition, toPosition);
+        version++;
+    }
+
+    /**
+     * Removes several ranges in one pass: items between the ranges are compacted towards the first one,
+     * then the remaining gap is closed at once.
+     *
+     * @param starts  ascending start positions of ranges.
+     * @param lengths lengths of ranges.
+     * @param count   count of ranges.
+     */
+    void removeRanges(int[] starts, int[] lengths, int count) {
+        if (count == 0) return;
+        int write = starts[0];
+        for (int r = 0; r < count; r++) {
+            int keptFrom = starts[r] + lengths[r];
+            int keptTo = r + 1 < count ? starts[r + 1] : keptFrom;
+            release(starts[r], keptFrom);
+            for (int read = keptFrom; read < keptTo; read++) {
+                moveSlot(physical(read), physical(write), write - read);
+                write++;
+            }
+        }
+        closeGap(write, starts[count - 1] + lengths[count - 1]);
+        version++;
+    }
+
+    void clear() {
+        if (items.length > MIN_CAPACITY) {
+            allocate(MIN_CAPACITY);
+        } else {
+            Arrays.fill(items, null);
+            Arrays.fill(handles, NO_HANDLE);
+            Arrays.fill(selected, 0);
+            Arrays.fill(headers, 0);
+        }
+        head = 0;
+        size = 0;
+        headersCount = 0;
+        selectedCount = 0;
+        index.clear();
+        handleKeys = new int[MIN_CAPACITY];
+        handlesCount = 0;
+        freeHandle = NO_HANDLE;
+        offset = 0;
+        version++;
+    }
+
+    private void fillSlot(int position, Object item, int dayKey, int viewType) {
+        int slot = physical(position);
+        items[slot] = item;
+        dayKeys[slot] = dayKey;
+        viewTypes[slot] = viewType;
+        setBit(selected, slot, false);
+        if (item instanceof IMessage) {
+            int handle = obtainHandle();
+            handleKeys[handle] = position + offset;
+            handles[slot] = handle;
+            setBit(headers, slot, false);
+            index.put(((IMessage) item).getId(), handle);
+        } else {
+            handles[slot] = NO_HANDLE;
+            setBit(headers, slot, true);
+            headersCount++;
+        }
+    }
+
+    /*
+     * Drops items in range from index and selection, slots themselves are overwritten or cleared by the caller.
+     * */
+    private void release(int fromPosition, int toPosition) {
+        for (int i = fromPosition; i < toPosition; i++) {
+            int slot = physical(i);
+            if (getBit(selected, slot)) {
+                setBit(selected, slot, false);
+                selectedCount--;
+            }
+            int handle = handles[slot];
+            if (handle != NO_HANDLE) {
+                index.remove(((IMessage) items[slot]).getId(), handle);
+                handleKeys[handle] = freeHandle;
+                freeHandle = handle;
+                handles[slot] = NO_HANDLE;
+            } else {
+                headersCount--;
+            }
+        }
+    }
+
+    private void closeGap(int fromPosition, int toPosition) {
+        int count = toPosition - fromPosition;
+        if (count <= 0) return;
+
+        int mask = items.length - 1;
+        if (fromPosition < size - toPosition) {
+            offset += count;
+            for (int i = fromPosition - 1; i >= 0; i--) {
+                moveSlot((head + i) & mask, (head + i + count) & mask, count);
+            }
+            for (int i = 0; i < count; i++) {
+                clearSlot((head + i) & mask);
+            }
+            head = (head + count) & mask;
+        } else {
+            for (int i = toPosition; i < size; i++) {
+                moveSlot((head + i) & mask, (head + i - count) & mask, -count);
+            }
+            for (int i = size - count; i < size; i++) {
+                clearSlot((head + i) & mask);
+            }
+        }
+        size -= count;
+    }
+
+    private void moveSlot(int from, int to, int keyShift) {
+        int handle = handles[from];
+        if (handle != NO_HANDLE) {
+            handleKeys[handle] += keyShift;
+        }
+        items[to] = items[from];
+        dayKeys[to] = dayKeys[from];
+        viewTypes[to] = viewTypes[from];
+        handles[to] = handle;
+        setBit(selected, to, getBit(selected, from));
+        setBit(headers, to, getBit(headers, from));
+    }
+
+    private void clearSlot(int slot) {
+        items[slot] = null;
+        handles[slot] = NO_HANDLE;
+        setBit(selected, slot, false);
+        setBit(headers, slot, false);
+    }
+
+    private int obtainHandle() {
+        int handle = freeHandle;
+        if (handle != NO_HANDLE) {
+            freeHandle = handleKeys[handle];
+        } else {
+            if (handlesCount == handleKeys.length) {
+                handleKeys = Arrays.copyOf(handleKeys, handlesCount << 1);
+            }
+            handle = handlesCount++;
+        }
+        return handle;
+    }
+
+    private void allocate(int capacity) {
+        items = new Object[capacity];
+        dayKeys = new int[capacity];
+        viewTypes = new int[capacity];
+        handles = new int[capacity];
+        Arrays.fill(handles, NO_HANDLE);
+        selected = new long[(capacity + 63) >> 6];
+        headers = new long[(capacity + 63) >> 6];
+    }
+
+    private void grow() {
+        Object[] oldItems = items;
+        int[] oldDayKeys = dayKeys;
+        int[] oldViewTypes = viewTypes;
+        int[] oldHandles = handles;
+        long[] oldSelected = selected;
+        long[] oldHeaders = headers;
+        int mask = oldItems.length - 1;
+
+        allocate(oldItems.length << 1);
+        for (int i = 0; i < size; i++) {
+            int slot = (head + i) & mask;
+            items[i] = oldItems[slot];
+            dayKeys[i] = oldDayKeys[slot];
+            viewTypes[i] = oldViewTypes[slot];
+            handles[i] = oldHandles[slot];
+            setBit(selected, i, getBit(oldSelected, slot));
+            setBit(headers, i, getBit(oldHeaders, slot));
+        }
+        head = 0;
+    }
+
+    private int physical(int position) {
+        return (head + position) & (items.length - 1);
+    }
+
+    private void checkIndex(int position, int bound) {
+        if (position < 0 || position >= bound) {
+            throw new IndexOutOfBoundsException("Index: " + position + ", Size: " + size);
+        }
+    }
+
+    private static boolean getBit(long[] bits, int i) {
+        return (bits[i >> 6] & (1L << i)) != 0;
+    }
+
+    private static void setBit(long[] bits, int i, boolean value) {
+        if (value) {
+            bits[i >> 6] |= 1L << i;
+        } else {
+            bits[i >> 6] &= ~(1L << i);
+        }
+    }
+}
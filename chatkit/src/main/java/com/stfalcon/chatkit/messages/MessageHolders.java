@@ -24,6 +24,7 @@ import com.stfalcon.chatkit.utils.RoundedImageView;
 
 import java.lang.reflect.Constructor;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
@@ -36,26 +37,28 @@ public class MessageHolders {
     private static final short VIEW_TYPE_DATE_HEADER = 130;
     private static final short VIEW_TYPE_TEXT_MESSAGE = 131;
     private static final short VIEW_TYPE_IMAGE_MESSAGE = 132;
+    private static final short VIEW_TYPE_FIRST_CUSTOM = 133;
 
-    private Class<? extends ViewHolder<Date>> dateHeaderHolder;
-    private int dateHeaderLayout;
+    private HolderConfig dateHeaderConfig;
 
-    private HolderConfig<IMessage> incomingTextConfig;
-    private HolderConfig<IMessage> outcomingTextConfig;
-    private HolderConfig<MessageContentType.Image> incomingImageConfig;
-    private HolderConfig<MessageContentType.Image> outcomingImageConfig;
+    private HolderConfig incomingTextConfig;
+    private HolderConfig outcomingTextConfig;
+    private HolderConfig incomingImageConfig;
+    private HolderConfig outcomingImageConfig;
 
+    private SparseArray<ContentTypeConfig> contentTypes = new SparseArray<>();
     private List<ContentTypeConfig> customContentTypes = new ArrayList<>();
+    private List<ContentTypeConfig> checkedContentTypes = new ArrayList<>();
     private ContentChecker contentChecker;
+    private int contentTypesVersion;
 
     public MessageHolders() {
-        this.dateHeaderHolder = DefaultDateHeaderViewHolder.class;
-        this.dateHeaderLayout = R.layout.item_date_header;
+        this.dateHeaderConfig = new HolderConfig(DEFAULT_DATE_HEADER_FACTORY, R.layout.item_date_header, null);
 
-        this.incomingTextConfig = new HolderConfig<>(DefaultIncomingTextMessageViewHolder.class, R.layout.item_incoming_text_message);
-        this.outcomingTextConfig = new HolderConfig<>(DefaultOutcomingTextMessageViewHolder.class, R.layout.item_outcoming_text_message);
-        this.incomingImageConfig = new HolderConfig<>(DefaultIncomingImageMessageViewHolder.class, R.layout.item_incoming_image_message);
-        this.outcomingImageConfig = new HolderConfig<>(DefaultOutcomingImageMessageViewHolder.class, R.layout.item_outcoming_image_message);
+        this.incomingTextConfig = new HolderConfig(DEFAULT_INCOMING_TEXT_FACTORY, R.layout.item_incoming_text_message, null);
+        this.outcomingTextConfig = new HolderConfig(DEFAULT_OUTCOMING_TEXT_FACTORY, R.layout.item_outcoming_text_message, null);
+        this.incomingImageConfig = new HolderConfig(DEFAULT_INCOMING_IMAGE_FACTORY, R.layout.item_incoming_image_message, null);
+        this.outcomingImageConfig = new HolderConfig(DEFAULT_OUTCOMING_IMAGE_FACTORY, R.layout.item_outcoming_image_message, null);
     }
 
     /**
@@ -68,7 +71,7 @@ public class MessageHolders {
     public MessageHolders setIncomingTextConfig(
             @NonNull Class<? extends BaseMessageViewHolder<? extends IMessage>> holder,
             @LayoutRes int layout) {
-        this.incomingTextConfig.holder = holder;
+        this.incomingTextConfig.setHolder(holder);
         this.incomingTextConfig.layout = layout;
         return this;
     }
@@ -85,12 +88,28 @@ public class MessageHolders {
             @NonNull Class<? extends BaseMessageViewHolder<? extends IMessage>> holder,
             @LayoutRes int layout,
             Object payload) {
-        this.incomingTextConfig.holder = holder;
+        this.incomingTextConfig.setHolder(holder);
         this.incomingTextConfig.layout = layout;
         this.incomingTextConfig.payload = payload;
         return this;
     }
 
+    /**
+     * Sets both of view holder factory and layout resource for incoming text message.
+     * Holders created by factory don't need reflection.
+     *
+     * @param factory holder factory.
+     * @param layout  layout resource.
+     * @return {@link MessageHolders} for subsequent configuration.
+     */
+    public MessageHolders setIncomingTextConfig(
+            @NonNull HolderFactory<? extends BaseMessageViewHolder<? extends IMessage>> factory,
+            @LayoutRes int layout) {
+        this.incomingTextConfig.setFactory(factory);
+        this.incomingTextConfig.layout = layout;
+        return this;
+    }
+
     /**
      * Sets custom view holder class for incoming text message.
      *
@@ -99,7 +118,7 @@ public class MessageHolders {
      */
     public MessageHolders setIncomingTextHolder(
             @NonNull Class<? extends BaseMessageViewHolder<? extends IMessage>> holder) {
-        this.incomingTextConfig.holder = holder;
+        this.incomingTextConfig.setHolder(holder);
         return this;
     }
 
@@ -113,7 +132,7 @@ public class MessageHolders {
     public MessageHolders setIncomingTextHolder(
             @NonNull Class<? extends BaseMessageViewHolder<? extends IMessage>> holder,
             Object payload) {
-        this.incomingTextConfig.holder = holder;
+        this.incomingTextConfig.setHolder(holder);
         this.incomingTextConfig.payload = payload;
         return this;
     }
@@ -152,7 +171,7 @@ public class MessageHolders {
     public MessageHolders setOutcomingTextConfig(
             @NonNull Class<? extends BaseMessageViewHolder<? extends IMessage>> holder,
             @LayoutRes int layout) {
-        this.outcomingTextConfig.holder = holder;
+        this.outcomingTextConfig.setHolder(holder);
         this.outcomingTextConfig.layout = layout;
         return this;
     }
@@ -169,12 +188,28 @@ public class MessageHolders {
             @NonNull Class<? extends BaseMessageViewHolder<? extends IMessage>> holder,
             @LayoutRes int layout,
             Object payload) {
-        this.outcomingTextConfig.holder = holder;
+        this.outcomingTextConfig.setHolder(holder);
         this.outcomingTextConfig.layout = layout;
         this.outcomingTextConfig.payload = payload;
         return this;
     }
 
+    /**
+     * Sets both of view holder factory and layout resource for outcoming text message.
+     * Holders created by factory don't need reflection.
+     *
+     * @param factory holder factory.
+     * @param layout  layout resource.
+     * @return {@link MessageHolders} for subsequent configuration.
+     */
+    public MessageHolders setOutcomingTextConfig(
+            @NonNull HolderFactory<? extends BaseMessageViewHolder<? extends IMessage>> factory,
+            @LayoutRes int layout) {
+        this.outcomingTextConfig.setFactory(factory);
+        this.outcomingTextConfig.layout = layout;
+        return this;
+    }
+
     /**
      * Sets custom view holder class for outcoming text message.
      *
@@ -183,7 +218,7 @@ public class MessageHolders {
      */
     public MessageHolders setOutcomingTextHolder(
             @NonNull Class<? extends BaseMessageViewHolder<? extends IMessage>> holder) {
-        this.outcomingTextConfig.holder = holder;
+        this.outcomingTextConfig.setHolder(holder);
         return this;
     }
 
@@ -197,7 +232,7 @@ public class MessageHolders {
     public MessageHolders setOutcomingTextHolder(
             @NonNull Class<? extends BaseMessageViewHolder<? extends IMessage>> holder,
             Object payload) {
-        this.outcomingTextConfig.holder = holder;
+        this.outcomingTextConfig.setHolder(holder);
         this.outcomingTextConfig.payload = payload;
         return this;
     }
@@ -236,7 +271,7 @@ public class MessageHolders {
     public MessageHolders setIncomingImageConfig(
             @NonNull Class<? extends BaseMessageViewHolder<? extends MessageContentType.Image>> holder,
             @LayoutRes int layout) {
-        this.incomingImageConfig.holder = holder;
+        this.incomingImageConfig.setHolder(holder);
         this.incomingImageConfig.layout = layout;
         return this;
     }
@@ -253,12 +288,28 @@ public class MessageHolders {
             @NonNull Class<? extends BaseMessageViewHolder<? extends MessageContentType.Image>> holder,
             @LayoutRes int layout,
             Object payload) {
-        this.incomingImageConfig.holder = holder;
+        this.incomingImageConfig.setHolder(holder);
         this.incomingImageConfig.layout = layout;
         this.incomingImageConfig.payload = payload;
         return this;
     }
 
+    /**
+     * Sets both of view holder factory and layout resource for incoming image message.
+     * Holders created by factory don't need reflection.
+     *
+     * @param factory holder factory.
+     * @param layout  layout resource.
+     * @return {@link MessageHolders} for subsequent configuration.
+     */
+    public MessageHolders setIncomingImageConfig(
+            @NonNull HolderFactory<? extends BaseMessageViewHolder<? extends MessageContentType.Image>> factory,
+            @LayoutRes int layout) {
+        this.incomingImageConfig.setFactory(factory);
+        this.incomingImageConfig.layout = layout;
+        return this;
+    }
+
     /**
      * Sets custom view holder class for incoming image message.
      *
@@ -267,7 +318,7 @@ public class MessageHolders {
      */
     public MessageHolders setIncomingImageHolder(
             @NonNull Class<? extends BaseMessageViewHolder<? extends MessageContentType.Image>> holder) {
-        this.incomingImageConfig.holder = holder;
+        this.incomingImageConfig.setHolder(holder);
         return this;
     }
 
@@ -281,7 +332,7 @@ public class MessageHolders {
     public MessageHolders setIncomingImageHolder(
             @NonNull Class<? extends BaseMessageViewHolder<? extends MessageContentType.Image>> holder,
             Object payload) {
-        this.incomingImageConfig.holder = holder;
+        this.incomingImageConfig.setHolder(holder);
         this.incomingImageConfig.payload = payload;
         return this;
     }
@@ -320,7 +371,7 @@ public class MessageHolders {
     public MessageHolders setOutcomingImageConfig(
             @NonNull Class<? extends BaseMessageViewHolder<? extends MessageContentType.Image>> holder,
             @LayoutRes int layout) {
-        this.outcomingImageConfig.holder = holder;
+        this.outcomingImageConfig.setHolder(holder);
         this.outcomingImageConfig.layout = layout;
         return this;
     }
@@ -337,12 +388,28 @@ public class MessageHolders {
             @NonNull Class<? extends BaseMessageViewHolder<? extends MessageContentType.Image>> holder,
             @LayoutRes int layout,
             Object payload) {
-        this.outcomingImageConfig.holder = holder;
+        this.outcomingImageConfig.setHolder(holder);
         this.outcomingImageConfig.layout = layout;
         this.outcomingImageConfig.payload = payload;
         return this;
     }
 
+    /**
+     * Sets both of view holder factory and layout resource for outcoming image message.
+     * Holders created by factory don't need reflection.
+     *
+     * @param factory holder factory.
+     * @param layout  layout resource.
+     * @return {@link MessageHolders} for subsequent configuration.
+     */
+    public MessageHolders setOutcomingImageConfig(
+            @NonNull HolderFactory<? extends BaseMessageViewHolder<? extends MessageContentType.Image>> factory,
+            @LayoutRes int layout) {
+        this.outcomingImageConfig.setFactory(factory);
+        this.outcomingImageConfig.layout = layout;
+        return this;
+    }
+
     /**
      * Sets custom view holder class for outcoming image message.
      *
@@ -351,7 +418,7 @@ public class MessageHolders {
      */
     public MessageHolders setOutcomingImageHolder(
             @NonNull Class<? extends BaseMessageViewHolder<? extends MessageContentType.Image>> holder) {
-        this.outcomingImageConfig.holder = holder;
+        this.outcomingImageConfig.setHolder(holder);
         return this;
     }
 
@@ -365,7 +432,7 @@ public class MessageHolders {
     public MessageHolders setOutcomingImageHolder(
             @NonNull Class<? extends BaseMessageViewHolder<? extends MessageContentType.Image>> holder,
             Object payload) {
-        this.outcomingImageConfig.holder = holder;
+        this.outcomingImageConfig.setHolder(holder);
         this.outcomingImageConfig.payload = payload;
         return this;
     }
@@ -404,8 +471,24 @@ public class MessageHolders {
     public MessageHolders setDateHeaderConfig(
             @NonNull Class<? extends ViewHolder<Date>> holder,
             @LayoutRes int layout) {
-        this.dateHeaderHolder = holder;
-        this.dateHeaderLayout = layout;
+        this.dateHeaderConfig.setHolder(holder);
+        this.dateHeaderConfig.layout = layout;
+        return this;
+    }
+
+    /**
+     * Sets both of view holder factory and layout resource for date header.
+     * Holders created by factory don't need reflection.
+     *
+     * @param factory holder factory.
+     * @param layout  layout resource.
+     * @return {@link MessageHolders} for subsequent configuration.
+     */
+    public MessageHolders setDateHeaderConfig(
+            @NonNull HolderFactory<? extends ViewHolder<Date>> factory,
+            @LayoutRes int layout) {
+        this.dateHeaderConfig.setFactory(factory);
+        this.dateHeaderConfig.layout = layout;
         return this;
     }
 
@@ -416,7 +499,7 @@ public class MessageHolders {
      * @return {@link MessageHolders} for subsequent configuration.
      */
     public MessageHolders setDateHeaderHolder(@NonNull Class<? extends ViewHolder<Date>> holder) {
-        this.dateHeaderHolder = holder;
+        this.dateHeaderConfig.setHolder(holder);
         return this;
     }
 
@@ -427,7 +510,7 @@ public class MessageHolders {
      * @return {@link MessageHolders} for subsequent configuration.
      */
     public MessageHolders setDateHeaderLayout(@LayoutRes int layout) {
-        this.dateHeaderLayout = layout;
+        this.dateHeaderConfig.layout = layout;
         return this;
     }
 
@@ -472,15 +555,10 @@ public class MessageHolders {
             @NonNull Class<? extends BaseMessageViewHolder<TYPE>> outcomingHolder, @LayoutRes int outcomingLayout,
             @NonNull ContentChecker contentChecker) {
 
-        if (type == 0)
-            throw new IllegalArgumentException("content type must be greater or less than '0'!");
-
-        customContentTypes.add(
-                new ContentTypeConfig<>(type,
-                        new HolderConfig<>(incomingHolder, incomingLayout),
-                        new HolderConfig<>(outcomingHolder, outcomingLayout)));
-        this.contentChecker = contentChecker;
-        return this;
+        return addContentType(type,
+                new HolderConfig(incomingHolder, incomingLayout, null),
+                new HolderConfig(outcomingHolder, outcomingLayout, null),
+                contentChecker);
     }
 
     /**
@@ -503,15 +581,106 @@ public class MessageHolders {
             @NonNull Class<? extends MessageHolders.BaseMessageViewHolder<TYPE>> outcomingHolder, Object outcomingPayload, @LayoutRes int outcomingLayout,
             @NonNull MessageHolders.ContentChecker contentChecker) {
 
-        if (type == 0)
-            throw new IllegalArgumentException("content type must be greater or less than '0'!");
+        return addContentType(type,
+                new HolderConfig(incomingHolder, incomingLayout, incomingPayload),
+                new HolderConfig(outcomingHolder, outcomingLayout, outcomingPayload),
+                contentChecker);
+    }
 
-        customContentTypes.add(
-                new MessageHolders.ContentTypeConfig<>(type,
-                        new MessageHolders.HolderConfig<>(incomingHolder, incomingLayout, incomingPayload),
-                        new MessageHolders.HolderConfig<>(outcomingHolder, outcomingLayout, outcomingPayload)));
-        this.contentChecker = contentChecker;
-        return this;
+    /**
+     * Registers custom content type (e.g. multimedia, events etc.) with holder factories,
+     * which create holders without reflection.
+     *
+     * @param type             unique id for content type
+     * @param incomingFactory  holder factory for incoming message
+     * @param incomingLayout   layout resource for incoming message
+     * @param outcomingFactory holder factory for outcoming message
+     * @param outcomingLayout  layout resource for outcoming message
+     * @param contentChecker   {@link ContentChecker} for registered type
+     * @return {@link MessageHolders} for subsequent configuration.
+     */
+    public <TYPE extends MessageContentType>
+    MessageHolders registerContentType(
+            byte type,
+            @NonNull HolderFactory<? extends BaseMessageViewHolder<TYPE>> incomingFactory, @LayoutRes int incomingLayout,
+            @NonNull HolderFactory<? extends BaseMessageViewHolder<TYPE>> outcomingFactory, @LayoutRes int outcomingLayout,
+            @NonNull ContentChecker contentChecker) {
+
+        return addContentType(type,
+                new HolderConfig(incomingFactory, incomingLayout, null),
+                new HolderConfig(outcomingFactory, outcomingLayout, null),
+                contentChecker);
+    }
+
+    /**
+     * Registers custom content type (e.g. multimedia, events etc.), which is resolved by
+     * {@link MessageContentType.Typed#getContentType()} of message instead of {@link ContentChecker}.
+     *
+     * @param type            unique id for content type, any int except {@link MessageContentType.Typed#NO_CONTENT_TYPE}
+     * @param incomingHolder  holder class for incoming message
+     * @param incomingLayout  layout resource for incoming message
+     * @param outcomingHolder holder class for outcoming message
+     * @param outcomingLayout layout resource for outcoming message
+     * @return {@link MessageHolders} for subsequent configuration.
+     */
+    public <TYPE extends MessageContentType.Typed>
+    MessageHolders registerContentType(
+            int type,
+            @NonNull Class<? extends BaseMessageViewHolder<TYPE>> incomingHolder, @LayoutRes int incomingLayout,
+            @NonNull Class<? extends BaseMessageViewHolder<TYPE>> outcomingHolder, @LayoutRes int outcomingLayout) {
+
+        return addContentType(type,
+                new HolderConfig(incomingHolder, incomingLayout, null),
+                new HolderConfig(outcomingHolder, outcomingLayout, null),
+                null);
+    }
+
+    /**
+     * Registers custom content type (e.g. multimedia, events etc.), which is resolved by
+     * {@link MessageContentType.Typed#getContentType()} of message instead of {@link ContentChecker}.
+     *
+     * @param type             unique id for content type, any int except {@link MessageContentType.Typed#NO_CONTENT_TYPE}
+     * @param incomingHolder   holder class for incoming message
+     * @param incomingPayload  payload for incoming message
+     * @param incomingLayout   layout resource for incoming message
+     * @param outcomingHolder  holder class for outcoming message
+     * @param outcomingPayload payload for outcoming message
+     * @param outcomingLayout  layout resource for outcoming message
+     * @return {@link MessageHolders} for subsequent configuration.
+     */
+    public <TYPE extends MessageContentType.Typed>
+    MessageHolders registerContentType(
+            int type,
+            @NonNull Class<? extends BaseMessageViewHolder<TYPE>> incomingHolder, Object incomingPayload, @LayoutRes int incomingLayout,
+            @NonNull Class<? extends BaseMessageViewHolder<TYPE>> outcomingHolder, Object outcomingPayload, @LayoutRes int outcomingLayout) {
+
+        return addContentType(type,
+                new HolderConfig(incomingHolder, incomingLayout, incomingPayload),
+                new HolderConfig(outcomingHolder, outcomingLayout, outcomingPayload),
+                null);
+    }
+
+    /**
+     * Registers custom content type (e.g. multimedia, events etc.) with holder factories. Type is resolved by
+     * {@link MessageContentType.Typed#getContentType()} of message instead of {@link ContentChecker}.
+     *
+     * @param type             unique id for content type, any int except {@link MessageContentType.Typed#NO_CONTENT_TYPE}
+     * @param incomingFactory  holder factory for incoming message
+     * @param incomingLayout   layout resource for incoming message
+     * @param outcomingFactory holder factory for outcoming message
+     * @param outcomingLayout  layout resource for outcoming message
+     * @return {@link MessageHolders} for subsequent configuration.
+     */
+    public <TYPE extends MessageContentType.Typed>
+    MessageHolders registerContentType(
+            int type,
+            @NonNull HolderFactory<? extends BaseMessageViewHolder<TYPE>> incomingFactory, @LayoutRes int incomingLayout,
+            @NonNull HolderFactory<? extends BaseMessageViewHolder<TYPE>> outcomingFactory, @LayoutRes int outcomingLayout) {
+
+        return addContentType(type,
+                new HolderConfig(incomingFactory, incomingLayout, null),
+                new HolderConfig(outcomingFactory, outcomingLayout, null),
+                null);
     }
 
     /*
@@ -533,33 +702,58 @@ public class MessageHolders {
         boolean hasContentFor(MESSAGE message, byte type);
     }
 
+    /**
+     * The interface for creating view holders without reflection. Register it instead of holder class
+     * e.g. if holder has custom constructor or you don't want to keep holder constructors in ProGuard rules.
+     */
+    public interface HolderFactory<HOLDER extends ViewHolder> {
+
+        /**
+         * Creates view holder for inflated item layout.
+         *
+         * @param itemView inflated layout.
+         * @param payload  custom data passed with holder config, {@code null} if it wasn't set.
+         * @return new view holder.
+         */
+        HOLDER create(View itemView, Object payload);
+    }
+
     /*
      * PRIVATE METHODS
      * */
 
     protected ViewHolder getHolder(ViewGroup parent, int viewType, MessagesListStyle messagesListStyle) {
-        switch (viewType) {
-            case VIEW_TYPE_DATE_HEADER:
-                return getHolder(parent, dateHeaderLayout, dateHeaderHolder, messagesListStyle, null);
-            case VIEW_TYPE_TEXT_MESSAGE:
-                return getHolder(parent, incomingTextConfig, messagesListStyle);
-            case -VIEW_TYPE_TEXT_MESSAGE:
-                return getHolder(parent, outcomingTextConfig, messagesListStyle);
-            case VIEW_TYPE_IMAGE_MESSAGE:
-                return getHolder(parent, incomingImageConfig, messagesListStyle);
-            case -VIEW_TYPE_IMAGE_MESSAGE:
-                return getHolder(parent, outcomingImageConfig, messagesListStyle);
-            default:
-                for (ContentTypeConfig typeConfig : customContentTypes) {
-                    if (Math.abs(typeConfig.type) == Math.abs(viewType)) {
-                        if (viewType > 0)
-                            return getHolder(parent, typeConfig.incomingConfig, messagesListStyle);
-                        else
-                            return getHolder(parent, typeConfig.outcomingConfig, messagesListStyle);
-                    }
-                }
+        return getHolder(parent, getHolderConfig(viewType), messagesListStyle);
+    }
+
+    /*
+     * Creates holder for the item view inflated in advance.
+     * */
+    ViewHolder getHolder(View itemView, int viewType, MessagesListStyle messagesListStyle) {
+        return createHolder(itemView, getHolderConfig(viewType), messagesListStyle);
+    }
+
+    int getLayout(int viewType) {
+        return getHolderConfig(viewType).layout;
+    }
+
+    /*
+     * Returns all view types which can be created by these holders: date header,
+     * then incoming and outcoming types of default and custom content.
+     * */
+    int[] getViewTypes() {
+        int[] viewTypes = new int[5 + customContentTypes.size() * 2];
+        viewTypes[0] = VIEW_TYPE_DATE_HEADER;
+        viewTypes[1] = VIEW_TYPE_TEXT_MESSAGE;
+        viewTypes[2] = -VIEW_TYPE_TEXT_MESSAGE;
+        viewTypes[3] = VIEW_TYPE_IMAGE_MESSAGE;
+        viewTypes[4] = -VIEW_TYPE_IMAGE_MESSAGE;
+        for (int i = 0; i < customContentTypes.size(); i++) {
+            int viewType = customContentTypes.get(i).viewType;
+            viewTypes[5 + i * 2] = viewType;
+            viewTypes[6 + i * 2] = -viewType;
         }
-        throw new IllegalStateException("Wrong message view type. Please, report this issue on GitHub with full stacktrace in description.");
+        return viewTypes;
     }
 
     @SuppressWarnings("unchecked")
@@ -571,8 +765,6 @@ public class MessageHolders {
                         final SparseArray<MessagesListAdapter.OnMessageViewClickListener> clickListenersArray) {
 
         if (item instanceof IMessage) {
-            ((MessageHolders.BaseMessageViewHolder) holder).isSelected = isSelected;
-            ((MessageHolders.BaseMessageViewHolder) holder).imageLoader = imageLoader;
             holder.itemView.setOnLongClickListener(onMessageLongClickListener);
             holder.itemView.setOnClickListener(onMessageClickListener);
 
@@ -588,14 +780,42 @@ public class MessageHolders {
                     });
                 }
             }
+        }
+        bind(holder, item, isSelected, imageLoader, dateHeadersFormatter, Collections.<Object>emptyList());
+    }
+
+    /*
+     * Binds item without touching its listeners: MessagesListAdapter sets them once
+     * when the holder is created.
+     * */
+    @SuppressWarnings("unchecked")
+    protected void bind(ViewHolder holder, Object item, boolean isSelected,
+                        ImageLoader imageLoader,
+                        DateFormatter.Formatter dateHeadersFormatter,
+                        List<Object> payloads) {
+
+        if (item instanceof IMessage) {
+            ((MessageHolders.BaseMessageViewHolder) holder).isSelected = isSelected;
+            ((MessageHolders.BaseMessageViewHolder) holder).imageLoader = imageLoader;
         } else if (item instanceof Date) {
             ((MessageHolders.DefaultDateHeaderViewHolder) holder).dateHeadersFormatter = dateHeadersFormatter;
         }
 
-        holder.onBind(item);
+        if (payloads.isEmpty()) {
+            holder.onBind(item);
+        } else {
+            holder.onBind(item, payloads);
+        }
     }
 
 
+    /*
+     * Changes when view type of an item may change, so cached view types have to be recalculated.
+     * */
+    int getContentTypesVersion() {
+        return contentTypesVersion;
+    }
+
     protected int getViewType(Object item, String senderId) {
         boolean isOutcoming = false;
         int viewType;
@@ -610,39 +830,82 @@ public class MessageHolders {
         return isOutcoming ? viewType * -1 : viewType;
     }
 
+    private HolderConfig getHolderConfig(int viewType) {
+        switch (viewType) {
+            case VIEW_TYPE_DATE_HEADER:
+                return dateHeaderConfig;
+            case VIEW_TYPE_TEXT_MESSAGE:
+                return incomingTextConfig;
+            case -VIEW_TYPE_TEXT_MESSAGE:
+                return outcomingTextConfig;
+            case VIEW_TYPE_IMAGE_MESSAGE:
+                return incomingImageConfig;
+            case -VIEW_TYPE_IMAGE_MESSAGE:
+                return outcomingImageConfig;
+            default:
+                int index = Math.abs(viewType) - VIEW_TYPE_FIRST_CUSTOM;
+                if (index >= 0 && index < customContentTypes.size()) {
+                    ContentTypeConfig typeConfig = customContentTypes.get(index);
+                    return viewType > 0 ? typeConfig.incomingConfig : typeConfig.outcomingConfig;
+                }
+        }
+        throw new IllegalStateException("Wrong message view type. Please, report this issue on GitHub with full stacktrace in description.");
+    }
+
     private ViewHolder getHolder(ViewGroup parent, HolderConfig holderConfig,
                                  MessagesListStyle style) {
-        return getHolder(parent, holderConfig.layout, holderConfig.holder, style, holderConfig.payload);
-    }
 
-    private <HOLDER extends ViewHolder>
-    ViewHolder getHolder(ViewGroup parent, @LayoutRes int layout, Class<HOLDER> holderClass,
-                         MessagesListStyle style, Object payload) {
+        View v = LayoutInflater.from(parent.getContext()).inflate(holderConfig.layout, parent, false);
+        return createHolder(v, holderConfig, style);
+    }
 
-        View v = LayoutInflater.from(parent.getContext()).inflate(layout, parent, false);
+    private ViewHolder createHolder(View v, HolderConfig holderConfig, MessagesListStyle style) {
+        ViewHolder holder;
         try {
-            Constructor<HOLDER> constructor = null;
-            HOLDER holder;
-            try {
-                constructor = holderClass.getDeclaredConstructor(View.class, Object.class);
-                constructor.setAccessible(true);
-                holder = constructor.newInstance(v, payload);
-            } catch (NoSuchMethodException e) {
-                constructor = holderClass.getDeclaredConstructor(View.class);
-                constructor.setAccessible(true);
-                holder = constructor.newInstance(v);
-            }
-            if (holder instanceof DefaultMessageViewHolder && style != null) {
-                ((DefaultMessageViewHolder) holder).applyStyle(style);
-            }
-            return holder;
+            holder = holderConfig.create(v);
         } catch (Exception e) {
             throw new UnsupportedOperationException("Somehow we couldn't create the ViewHolder for message. Please, report this issue on GitHub with full stacktrace in description.", e);
         }
+        if (holder instanceof DefaultMessageViewHolder && style != null) {
+            ((DefaultMessageViewHolder) holder).applyStyle(style);
+        }
+        return holder;
+    }
+
+    /*
+     * Registered content type keeps its view type after re-registration, so holders
+     * created for it stay valid, only its configs and checker flag are replaced.
+     * */
+    private MessageHolders addContentType(int type, HolderConfig incomingConfig, HolderConfig outcomingConfig,
+                                          ContentChecker contentChecker) {
+        if (type == MessageContentType.Typed.NO_CONTENT_TYPE)
+            throw new IllegalArgumentException("content type must be greater or less than '0'!");
+
+        ContentTypeConfig config = contentTypes.get(type);
+        if (config == null) {
+            config = new ContentTypeConfig(type, VIEW_TYPE_FIRST_CUSTOM + customContentTypes.size());
+            contentTypes.put(type, config);
+            customContentTypes.add(config);
+        }
+        config.incomingConfig = incomingConfig;
+        config.outcomingConfig = outcomingConfig;
+
+        checkedContentTypes.remove(config);
+        if (contentChecker != null) {
+            checkedContentTypes.add(config);
+            this.contentChecker = contentChecker;
+        }
+        contentTypesVersion++;
+        return this;
     }
 
     @SuppressWarnings("unchecked")
-    private short getContentViewType(IMessage message) {
+    private int getContentViewType(IMessage message) {
+        if (message instanceof MessageContentType.Typed) {
+            ContentTypeConfig config = contentTypes.get(((MessageContentType.Typed) message).getContentType());
+            if (config != null) return config.viewType;
+        }
+
         if (message instanceof MessageContentType.Image
                 && ((MessageContentType.Image) message).getImageUrl() != null) {
             return VIEW_TYPE_IMAGE_MESSAGE;
@@ -651,13 +914,13 @@ public class MessageHolders {
         // other default types will be here
 
         if (message instanceof MessageContentType) {
-            for (int i = 0; i < customContentTypes.size(); i++) {
-                ContentTypeConfig config = customContentTypes.get(i);
+            for (int i = 0; i < checkedContentTypes.size(); i++) {
+                ContentTypeConfig config = checkedContentTypes.get(i);
                 if (contentChecker == null) {
                     throw new IllegalArgumentException("ContentChecker cannot be null when using custom content types!");
                 }
-                boolean hasContent = contentChecker.hasContentFor(message, config.type);
-                if (hasContent) return config.type;
+                boolean hasContent = contentChecker.hasContentFor(message, (byte) config.type);
+                if (hasContent) return config.viewType;
             }
         }
 
@@ -675,6 +938,9 @@ public class MessageHolders {
     public static abstract class BaseMessageViewHolder<MESSAGE extends IMessage> extends ViewHolder<MESSAGE> {
 
         boolean isSelected;
+        MessagesListAdapter adapter;
+        View.OnClickListener clickListener;
+        int viewClickListenersVersion;
 
         /**
          * For setting custom data to ViewHolder
@@ -711,7 +977,37 @@ public class MessageHolders {
          * @return weather is selection mode enabled.
          */
         public boolean isSelectionModeEnabled() {
-            return MessagesListAdapter.isSelectionModeEnabled;
+            return adapter != null && adapter.isSelectionModeEnabled();
+        }
+
+        /**
+         * Called when only selection of the message has changed, or some part of it described by payloads
+         * passed to {@link MessagesListAdapter#update(IMessage, Object)}. Override it to update only
+         * the views which depend on payloads, by default selection payload is passed to
+         * {@link #onBindSelection(IMessage)} and the whole message is rebound for other payloads.
+         *
+         * @param message  bound message.
+         * @param payloads non-empty list of payloads.
+         */
+        @Override
+        public void onBind(MESSAGE message, List<Object> payloads) {
+            for (Object payload : payloads) {
+                if (payload != MessagesListAdapter.PAYLOAD_SELECTION) {
+                    onBind(message);
+                    return;
+                }
+            }
+            onBindSelection(message);
+        }
+
+        /**
+         * Called instead of {@link #onBind(Object)} when only selection of the message has changed.
+         * Override it to update only the views displaying selection, by default the whole message is rebound.
+         *
+         * @param message bound message.
+         */
+        public void onBindSelection(MESSAGE message) {
+            onBind(message);
         }
 
         /**
@@ -723,19 +1019,30 @@ public class MessageHolders {
             return imageLoader;
         }
 
+        /**
+         * Sets text of message to view. Links and spans of {@link MessagesListAdapter.SpanProcessor}s are
+         * taken from the adapter cache, so text isn't processed again when message is rebound.
+         *
+         * @param view    view for message text.
+         * @param message message.
+         */
+        protected void setMessageText(TextView view, MESSAGE message) {
+            Spannable spanned = adapter != null ? adapter.getSpannedText(message) : null;
+            if (spanned == null) {
+                view.setText(message.getText());
+                return;
+            }
+            // links are already in the cached text, so TextView mustn't look for them again
+            if (view.getAutoLinkMask() != 0) {
+                view.setAutoLinkMask(0);
+            }
+            view.setText(spanned);
+        }
+
         protected void configureLinksBehavior(final TextView text) {
             text.setLinksClickable(false);
-            text.setMovementMethod(new LinkMovementMethod() {
-                @Override
-                public boolean onTouchEvent(TextView widget, Spannable buffer, MotionEvent event) {
-                    boolean result = false;
-                    if (!MessagesListAdapter.isSelectionModeEnabled) {
-                        result = super.onTouchEvent(widget, buffer, event);
-                    }
-                    itemView.onTouchEvent(event);
-                    return result;
-                }
-            });
+            text.setTag(R.id.messageHolder, this);
+            text.setMovementMethod(HolderLinkMovementMethod.INSTANCE);
         }
     }
 
@@ -767,7 +1074,14 @@ public class MessageHolders {
             }
 
             if (text != null) {
-                text.setText(message.getText());
+                setMessageText(text, message);
+            }
+        }
+
+        @Override
+        public void onBindSelection(MESSAGE message) {
+            if (bubble != null) {
+                bubble.setSelected(isSelected());
             }
         }
 
@@ -826,7 +1140,14 @@ public class MessageHolders {
             }
 
             if (text != null) {
-                text.setText(message.getText());
+                setMessageText(text, message);
+            }
+        }
+
+        @Override
+        public void onBindSelection(MESSAGE message) {
+            if (bubble != null) {
+                bubble.setSelected(isSelected());
             }
         }
 
@@ -889,6 +1210,13 @@ public class MessageHolders {
             }
         }
 
+        @Override
+        public void onBindSelection(MESSAGE message) {
+            if (imageOverlay != null) {
+                imageOverlay.setSelected(isSelected());
+            }
+        }
+
         @Override
         public final void applyStyle(MessagesListStyle style) {
             super.applyStyle(style);
@@ -959,6 +1287,13 @@ public class MessageHolders {
             }
         }
 
+        @Override
+        public void onBindSelection(MESSAGE message) {
+            if (imageOverlay != null) {
+                imageOverlay.setSelected(isSelected());
+            }
+        }
+
         @Override
         public final void applyStyle(MessagesListStyle style) {
             super.applyStyle(style);
@@ -1134,6 +1469,29 @@ public class MessageHolders {
         }
     }
 
+    /*
+     * Movement method shared by all holders, it finds the holder of text view by tag.
+     * */
+    private static class HolderLinkMovementMethod extends LinkMovementMethod {
+
+        private static final HolderLinkMovementMethod INSTANCE = new HolderLinkMovementMethod();
+
+        @Override
+        public boolean onTouchEvent(TextView widget, Spannable buffer, MotionEvent event) {
+            Object tag = widget.getTag(R.id.messageHolder);
+            if (!(tag instanceof BaseMessageViewHolder)) {
+                return super.onTouchEvent(widget, buffer, event);
+            }
+            BaseMessageViewHolder holder = (BaseMessageViewHolder) tag;
+            boolean result = false;
+            if (!holder.isSelectionModeEnabled()) {
+                result = super.onTouchEvent(widget, buffer, event);
+            }
+            holder.itemView.onTouchEvent(event);
+            return result;
+        }
+    }
+
     /*
      * DEFAULTS
      * */
@@ -1142,6 +1500,46 @@ public class MessageHolders {
         void applyStyle(MessagesListStyle style);
     }
 
+    private static final HolderFactory<DefaultDateHeaderViewHolder> DEFAULT_DATE_HEADER_FACTORY =
+            new HolderFactory<DefaultDateHeaderViewHolder>() {
+                @Override
+                public DefaultDateHeaderViewHolder create(View itemView, Object payload) {
+                    return new DefaultDateHeaderViewHolder(itemView);
+                }
+            };
+
+    private static final HolderFactory<DefaultIncomingTextMessageViewHolder> DEFAULT_INCOMING_TEXT_FACTORY =
+            new HolderFactory<DefaultIncomingTextMessageViewHolder>() {
+                @Override
+                public DefaultIncomingTextMessageViewHolder create(View itemView, Object payload) {
+                    return new DefaultIncomingTextMessageViewHolder(itemView);
+                }
+            };
+
+    private static final HolderFactory<DefaultOutcomingTextMessageViewHolder> DEFAULT_OUTCOMING_TEXT_FACTORY =
+            new HolderFactory<DefaultOutcomingTextMessageViewHolder>() {
+                @Override
+                public DefaultOutcomingTextMessageViewHolder create(View itemView, Object payload) {
+                    return new DefaultOutcomingTextMessageViewHolder(itemView);
+                }
+            };
+
+    private static final HolderFactory<DefaultIncomingImageMessageViewHolder> DEFAULT_INCOMING_IMAGE_FACTORY =
+            new HolderFactory<DefaultIncomingImageMessageViewHolder>() {
+                @Override
+                public DefaultIncomingImageMessageViewHolder create(View itemView, Object payload) {
+                    return new DefaultIncomingImageMessageViewHolder(itemView);
+                }
+            };
+
+    private static final HolderFactory<DefaultOutcomingImageMessageViewHolder> DEFAULT_OUTCOMING_IMAGE_FACTORY =
+            new HolderFactory<DefaultOutcomingImageMessageViewHolder>() {
+                @Override
+                public DefaultOutcomingImageMessageViewHolder create(View itemView, Object payload) {
+                    return new DefaultOutcomingImageMessageViewHolder(itemView);
+                }
+            };
+
     private static class DefaultIncomingTextMessageViewHolder
             extends IncomingTextMessageViewHolder<IMessage> {
 
@@ -1174,36 +1572,90 @@ public class MessageHolders {
         }
     }
 
-    private static class ContentTypeConfig<TYPE extends MessageContentType> {
+    private static class ContentTypeConfig {
 
-        private byte type;
-        private HolderConfig<TYPE> incomingConfig;
-        private HolderConfig<TYPE> outcomingConfig;
-
-        private ContentTypeConfig(
-                byte type, HolderConfig<TYPE> incomingConfig, HolderConfig<TYPE> outcomingConfig) {
+        private final int type;
+        private final int viewType;
+        private HolderConfig incomingConfig;
+        private HolderConfig outcomingConfig;
 
+        private ContentTypeConfig(int type, int viewType) {
             this.type = type;
-            this.incomingConfig = incomingConfig;
-            this.outcomingConfig = outcomingConfig;
+            this.viewType = viewType;
         }
     }
 
-    private class HolderConfig<T extends IMessage> {
+    private static class HolderConfig {
 
-        protected Class<? extends BaseMessageViewHolder<? extends T>> holder;
+        private Class<? extends ViewHolder> holder;
+        private HolderFactory<? extends ViewHolder> factory;
         protected int layout;
         protected Object payload;
 
-        HolderConfig(Class<? extends BaseMessageViewHolder<? extends T>> holder, int layout) {
+        private Constructor<? extends ViewHolder> constructor;
+        private boolean isConstructorWithPayload;
+
+        HolderConfig(Class<? extends ViewHolder> holder, int layout, Object payload) {
             this.holder = holder;
             this.layout = layout;
+            this.payload = payload;
         }
 
-        HolderConfig(Class<? extends BaseMessageViewHolder<? extends T>> holder, int layout, Object payload) {
-            this.holder = holder;
+        HolderConfig(HolderFactory<? extends ViewHolder> factory, int layout, Object payload) {
+            this.factory = factory;
             this.layout = layout;
             this.payload = payload;
         }
+
+        void setHolder(Class<? extends ViewHolder> holder) {
+            this.holder = holder;
+            this.factory = null;
+            this.constructor = null;
+        }
+
+        void setFactory(HolderFactory<? extends ViewHolder> factory) {
+            this.factory = factory;
+            this.holder = null;
+            this.constructor = null;
+        }
+
+        ViewHolder create(View itemView) throws Exception {
+            if (factory != null) {
+                return factory.create(itemView, payload);
+            }
+            if (constructor == null) {
+                resolveConstructor();
+            }
+            return isConstructorWithPayload
+                    ? constructor.newInstance(itemView, payload)
+                    : constructor.newInstance(itemView);
+        }
+
+        /*
+         * Constructor is looked up once per config. Constructor with payload is preferred,
+         * the one with view only is used for older holders.
+         * */
+        @SuppressWarnings("unchecked")
+        private void resolveConstructor() throws NoSuchMethodException {
+            Constructor<? extends ViewHolder> viewConstructor = null;
+            for (Constructor<?> candidate : holder.getDeclaredConstructors()) {
+                Class<?>[] types = candidate.getParameterTypes();
+                if (types.length == 2 && types[0] == View.class && types[1] == Object.class) {
+                    constructor = (Constructor<? extends ViewHolder>) candidate;
+                    isConstructorWithPayload = true;
+                    break;
+                } else if (types.length == 1 && types[0] == View.class) {
+                    viewConstructor = (Constructor<? extends ViewHolder>) candidate;
+                }
+            }
+            if (constructor == null) {
+                if (viewConstructor == null) {
+                    throw new NoSuchMethodException(holder.getName() + " has no (View) or (View, Object) constructor");
+                }
+                constructor = viewConstructor;
+                isConstructorWithPayload = false;
+            }
+            constructor.setAccessible(true);
+        }
     }
 }
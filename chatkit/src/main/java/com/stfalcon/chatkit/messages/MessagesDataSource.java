@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright 2016 stfalcon.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.stfalcon.chatkit.messages;
+
+import com.stfalcon.chatkit.commons.models.IMessage;
+
+import java.util.List;
+
+/**
+ * Source of messages pages for {@link MessagesListAdapter#setDataSource(MessagesDataSource)}.
+ * Pages are keyed by id of the message at the edge of already loaded ones. All methods are called
+ * on background thread (see {@link com.stfalcon.chatkit.utils.TaskExecutors#background()}),
+ * results are added to the adapter on the main thread.
+ * <p>
+ * Every method returns messages sorted from newest to oldest, empty list means there are no more messages
+ * in this direction. Thrown exception moves the direction to {@link LoadState#ERROR} until
+ * {@link MessagesListAdapter#retry()} is called.
+ */
+public interface MessagesDataSource<MESSAGE extends IMessage> {
+
+    /**
+     * Loads the newest messages.
+     *
+     * @param count requested count of messages.
+     * @return messages from newest to oldest.
+     * @throws Exception if messages couldn't be loaded.
+     */
+    List<MESSAGE> loadInitial(int count) throws Exception;
+
+    /**
+     * Loads messages older than the given one.
+     *
+     * @param id    id of the oldest loaded message.
+     * @param count requested count of messages.
+     * @return messages from newest to oldest.
+     * @throws Exception if messages couldn't be loaded.
+     */
+    List<MESSAGE> loadOlder(String id, int count) throws Exception;
+
+    /**
+     * Loads messages newer than the given one.
+     *
+     * @param id    id of the newest loaded message.
+     * @param count requested count of messages.
+     * @return messages from newest to oldest.
+     * @throws Exception if messages couldn't be loaded.
+     */
+    List<MESSAGE> loadNewer(String id, int count) throws Exception;
+
+    /**
+     * Loads messages around the given one for {@link MessagesListAdapter#scrollToMessage(String)},
+     * e.g. a half of them older and a half newer than it.
+     *
+     * @param id    id of the message to show.
+     * @param count requested count of messages.
+     * @return messages from newest to oldest, including the given one.
+     * @throws Exception if messages couldn't be loaded.
+     */
+    List<MESSAGE> loadAround(String id, int count) throws Exception;
+
+    /**
+     * Direction of loading.
+     */
+    enum Direction {
+        INITIAL, AROUND, OLDER, NEWER
+    }
+
+    /**
+     * State of loading in one direction.
+     */
+    enum LoadState {
+        /**
+         * Nothing is loading, next page will be loaded when list is scrolled close enough.
+         */
+        IDLE,
+        /**
+         * Page is loading.
+         */
+        LOADING,
+        /**
+         * Last load failed, waiting for {@link MessagesListAdapter#retry()}.
+         */
+        ERROR,
+        /**
+         * There are no more messages in this direction.
+         */
+        END
+    }
+}
@@ -18,18 +18,24 @@ package com.stfalcon.chatkit.messages;
 
 import android.content.Context;
 import android.support.annotation.Nullable;
+import android.support.v4.view.AsyncLayoutInflater;
 import android.support.v7.widget.DefaultItemAnimator;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.support.v7.widget.SimpleItemAnimator;
 import android.util.AttributeSet;
+import android.view.View;
+import android.view.ViewGroup;
 
 import com.stfalcon.chatkit.commons.models.IMessage;
+import com.stfalcon.chatkit.utils.DateChangesReceiver;
 
 /**
  * Component for displaying list of messages
  */
 public class MessagesList extends RecyclerView {
+    private static final int DEFAULT_MAX_RECYCLED_VIEWS = 5;
+
     private MessagesListStyle messagesListStyle;
 
     public MessagesList(Context context) {
@@ -90,8 +96,85 @@ public class MessagesList extends RecyclerView {
         super.setAdapter(adapter);
     }
 
+    /**
+     * Inflates layouts of holders for every view type of the adapter in background and puts the holders
+     * into {@link RecycledViewPool}, so first messages of each type are shown without inflating on the main thread.
+     * Call it after {@link #setAdapter(MessagesListAdapter)}, setting adapter clears the pool.
+     * <p>
+     * Pool can be shared by several lists via {@link #setRecycledViewPool(RecycledViewPool)} if their adapters
+     * use the same {@link MessageHolders}, then it's enough to pre-inflate holders for one of them.
+     *
+     * @param countPerViewType count of holders for each view type, already pooled holders are counted too.
+     */
+    public void preInflateHolders(int countPerViewType) {
+        Adapter adapter = getAdapter();
+        if (!(adapter instanceof MessagesListAdapter)) {
+            throw new IllegalStateException("Set adapter with #setAdapter(MessagesListAdapter) before pre-inflating holders.");
+        }
+        MessagesListAdapter<?> messagesAdapter = (MessagesListAdapter<?>) adapter;
+        RecycledViewPool pool = getRecycledViewPool();
+        AsyncLayoutInflater inflater = new AsyncLayoutInflater(getContext());
+
+        for (int viewType : messagesAdapter.getHolderViewTypes()) {
+            if (countPerViewType > DEFAULT_MAX_RECYCLED_VIEWS) {
+                pool.setMaxRecycledViews(viewType, countPerViewType);
+            }
+            int missing = countPerViewType - pool.getRecycledViewCount(viewType);
+            if (missing <= 0) continue;
+
+            PreInflateCallback callback = new PreInflateCallback(messagesAdapter, viewType);
+            int layout = messagesAdapter.getHolderLayout(viewType);
+            for (int i = 0; i < missing; i++) {
+                inflater.inflate(layout, this, callback);
+            }
+        }
+    }
+
+    /**
+     * Scrolls to the message with the given id, loading it from data source if needed.
+     * See {@link MessagesListAdapter#scrollToMessage(String)}.
+     *
+     * @param id id of the message.
+     * @return {@code true} if the message is shown or is loading.
+     */
+    public boolean scrollToMessage(String id) {
+        Adapter adapter = getAdapter();
+        return adapter instanceof MessagesListAdapter
+                && ((MessagesListAdapter<?>) adapter).scrollToMessage(id);
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        DateChangesReceiver.register(getContext());
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        DateChangesReceiver.unregister(getContext());
+        super.onDetachedFromWindow();
+    }
+
     @SuppressWarnings("ResourceType")
     private void parseStyle(Context context, AttributeSet attrs) {
         messagesListStyle = MessagesListStyle.parse(context, attrs);
     }
+
+    private class PreInflateCallback implements AsyncLayoutInflater.OnInflateFinishedListener {
+
+        private final MessagesListAdapter<?> adapter;
+        private final int viewType;
+
+        PreInflateCallback(MessagesListAdapter<?> adapter, int viewType) {
+            this.adapter = adapter;
+            this.viewType = viewType;
+        }
+
+        @Override
+        public void onInflateFinished(View view, int resid, ViewGroup parent) {
+            // adapter could be replaced while layouts were inflating
+            if (getAdapter() != adapter) return;
+            getRecycledViewPool().putRecycledView(adapter.createPreInflatedHolder(MessagesList.this, viewType, view));
+        }
+    }
 }
@@ -20,7 +20,10 @@ import android.content.ClipData;
 import android.content.ClipboardManager;
 import android.content.Context;
 import android.support.annotation.LayoutRes;
+import android.support.annotation.Nullable;
+import android.support.v7.util.DiffUtil;
 import android.support.v7.widget.RecyclerView;
+import android.text.Layout;
 import android.text.Spannable;
 import android.text.method.LinkMovementMethod;
 import android.util.SparseArray;
@@ -35,11 +38,19 @@ import com.stfalcon.chatkit.commons.ImageLoader;
 import com.stfalcon.chatkit.commons.ViewHolder;
 import com.stfalcon.chatkit.commons.models.IMessage;
 import com.stfalcon.chatkit.utils.DateFormatter;
+import com.stfalcon.chatkit.utils.IngestionQueue;
+import com.stfalcon.chatkit.utils.TaskExecutors;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.RandomAccess;
 
 /**
  * Adapter for {@link MessagesList}.
@@ -49,16 +60,44 @@ public class MessagesListAdapter<MESSAGE extends IMessage>
         extends RecyclerView.Adapter<ViewHolder>
         implements RecyclerScrollMoreListener.OnLoadMoreListener {
 
-    protected static boolean isSelectionModeEnabled;
+    /**
+     * Payload of change notifications sent when only selection of items has changed.
+     * Message holders receiving only this payload are rebound with
+     * {@link MessageHolders.BaseMessageViewHolder#onBindSelection(IMessage)}.
+     */
+    public static final Object PAYLOAD_SELECTION = new Object();
+
+    private static final int SPANNED_TEXT_CACHE_SIZE = 200;
+    private static final int MAX_SUBMIT_ATTEMPTS = 3;
+    private static final Comparator<IMessage> NEWEST_FIRST = new Comparator<IMessage>() {
+        @Override
+        public int compare(IMessage first, IMessage second) {
+            int result = second.getCreatedAt().compareTo(first.getCreatedAt());
+            return result != 0 ? result : second.getId().compareTo(first.getId());
+        }
+    };
 
+    /**
+     * View of the adapter items kept for compatibility. Items are stored in {@link ItemsStore},
+     * every {@code get} of this list creates a new {@link Wrapper}, so wrappers can't be compared by identity
+     * and changing their fields doesn't change the adapter: put the changed wrapper back with {@code set}.
+     * Changes of the list itself are written to the store, but as before they don't fix date headers
+     * and don't notify the adapter.
+     *
+     * @deprecated use methods of the adapter (e.g. {@link #update(IMessage)}, {@link #delete(IMessage)}) instead.
+     */
+    @Deprecated
     protected List<Wrapper> items;
+    private final ItemsStore store = new ItemsStore();
     private MessageHolders holders;
     private String senderId;
 
-    private int selectedItemsCount;
+    private boolean isSelectionModeEnabled;
     private SelectionListener selectionListener;
 
     private OnLoadMoreListener loadMoreListener;
+    private OnLoadStateChangedListener loadStateChangedListener;
+    private final MessagesPager<MESSAGE> pager = new MessagesPager<>(this);
     private OnMessageClickListener<MESSAGE> onMessageClickListener;
     private OnMessageViewClickListener<MESSAGE> onMessageViewClickListener;
     private OnMessageLongClickListener<MESSAGE> onMessageLongClickListener;
@@ -68,6 +107,41 @@ public class MessagesListAdapter<MESSAGE extends IMessage>
     private MessagesListStyle messagesListStyle;
     private DateFormatter.Formatter dateHeadersFormatter;
     private SparseArray<OnMessageViewClickListener> viewClickListenersArray = new SparseArray<>();
+    private int viewClickListenersVersion;
+
+    private DiffCallback<MESSAGE> diffCallback;
+    private volatile int submitGeneration;
+    private int dayKeysVersion = DateFormatter.getTimeZoneVersion();
+    private int viewTypesVersion;
+    private View preInflatedItemView;
+    private TextLayoutCache textLayoutCache;
+    private final SpannedTextCache spannedTextCache = new SpannedTextCache(SPANNED_TEXT_CACHE_SIZE);
+    private final IngestionQueue<MESSAGE> ingestionQueue = new IngestionQueue<>(new IngestionQueue.Target<MESSAGE>() {
+        @Override
+        public String getId(MESSAGE message) {
+            return message.getId();
+        }
+
+        @Override
+        public void add(List<MESSAGE> messages) {
+            List<MESSAGE> newMessages = new ArrayList<>(messages.size());
+            for (MESSAGE message : messages) {
+                if (!MessagesListAdapter.this.update(message)) newMessages.add(message);
+            }
+            // producers on different threads may queue messages out of order
+            insertAll(newMessages);
+        }
+
+        @Override
+        public void update(MESSAGE message) {
+            MessagesListAdapter.this.update(message);
+        }
+
+        @Override
+        public void delete(String id) {
+            deleteById(id);
+        }
+    });
 
     /**
      * For default list item layout and view holder.
@@ -91,51 +165,80 @@ public class MessagesListAdapter<MESSAGE extends IMessage>
         this.senderId = senderId;
         this.holders = holders;
         this.imageLoader = imageLoader;
-        this.items = new ArrayList<>();
+        this.items = new ItemsView();
+        this.viewTypesVersion = holders.getContentTypesVersion();
     }
 
     @Override
     public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
-        return holders.getHolder(parent, viewType, messagesListStyle);
+        ViewHolder holder = preInflatedItemView != null
+                ? holders.getHolder(preInflatedItemView, viewType, messagesListStyle)
+                : holders.getHolder(parent, viewType, messagesListStyle);
+        if (holder instanceof MessageHolders.BaseMessageViewHolder) {
+            attachHolder((MessageHolders.BaseMessageViewHolder) holder);
+        }
+        return holder;
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public void onBindViewHolder(ViewHolder holder, int position) {
-        Wrapper wrapper = items.get(position);
-        holders.bind(holder, wrapper.item, wrapper.isSelected, imageLoader,
-                getMessageClickListener(wrapper),
-                getMessageLongClickListener(wrapper),
-                dateHeadersFormatter,
-                viewClickListenersArray);
+        onBindViewHolder(holder, position, Collections.<Object>emptyList());
+    }
+
+    @Override
+    public void onBindViewHolder(ViewHolder holder, int position, List<Object> payloads) {
+        if (holder instanceof MessageHolders.BaseMessageViewHolder) {
+            MessageHolders.BaseMessageViewHolder messageHolder = (MessageHolders.BaseMessageViewHolder) holder;
+            if (messageHolder.adapter != this) {
+                // holder was created by another adapter sharing the same RecycledViewPool
+                attachHolder(messageHolder);
+            } else if (messageHolder.viewClickListenersVersion != viewClickListenersVersion) {
+                // view click listener was registered after the holder had been created
+                setViewClickListeners(messageHolder);
+            }
+        }
+        holders.bind(holder, store.get(position), store.isSelected(position), imageLoader,
+                dateHeadersFormatter, payloads);
     }
 
     @Override
     public int getItemCount() {
-        return items.size();
+        return store.size();
     }
 
     @Override
     public int getItemViewType(int position) {
-        return holders.getViewType(items.get(position).item, senderId);
+        if (viewTypesVersion != holders.getContentTypesVersion()) {
+            // content types were registered after items had been added
+            viewTypesVersion = holders.getContentTypesVersion();
+            store.invalidateViewTypes();
+        }
+        int viewType = store.getViewType(position);
+        if (viewType == ItemsStore.NO_VIEW_TYPE) {
+            viewType = viewTypeOf(store.get(position));
+            store.setViewType(position, viewType);
+        }
+        return viewType;
     }
 
-    @Override
     public void onLoadMore(int page, int total) {
         if (loadMoreListener != null) {
             loadMoreListener.onLoadMore(page, total);
         }
     }
 
-    @Override
     public int getMessagesCount() {
-        int count = 0;
-        for (Wrapper item : items) {
-            if (item.item instanceof IMessage) {
-                count++;
-            }
-        }
-        return count;
+        return store.size() - store.getHeadersCount();
+    }
+
+    @Override
+    public void onVisibleRangeChanged(int firstVisible, int lastVisible) {
+        pager.onVisibleRangeChanged(firstVisible, lastVisible);
+    }
+
+    @Override
+    public void onUserScrollStarted() {
+        pager.onUserScrollStarted();
     }
 
     /*
@@ -143,24 +246,49 @@ public class MessagesListAdapter<MESSAGE extends IMessage>
      * */
 
     /**
-     * Adds message to bottom of list and scroll if needed.
+     * Adds message to bottom of list and scroll if needed. If data source is set and the newest messages
+     * aren't loaded (e.g. after {@link #scrollToMessage(String)}), the message is added when newer pages
+     * are loaded to the end.
      *
      * @param message message to add.
      * @param scroll  {@code true} if need to scroll list to bottom when message added.
      */
     public void addToStart(MESSAGE message, boolean scroll) {
-        boolean isNewMessageToday = !isPreviousSameDate(0, message.getCreatedAt());
+        if (pager.deferNewest(Collections.singletonList(message))) return;
+        checkDayKeys();
+        int dayKey = DateFormatter.toEpochDay(message.getCreatedAt());
+        boolean isNewMessageToday = !isPreviousSameDate(0, dayKey);
         if (isNewMessageToday) {
-            items.add(0, new Wrapper<>(message.getCreatedAt()));
+            store.add(0, message.getCreatedAt(), dayKey, viewTypeOf(message.getCreatedAt()));
         }
-        Wrapper<MESSAGE> element = new Wrapper<>(message);
-        items.add(0, element);
+        store.add(0, message, dayKey, viewTypeOf(message));
         notifyItemRangeInserted(0, isNewMessageToday ? 2 : 1);
+        spannedTextCache.precompute(message);
+        if (textLayoutCache != null) {
+            textLayoutCache.precompute(message, senderId);
+        }
         if (layoutManager != null && scroll) {
             layoutManager.scrollToPosition(0);
         }
     }
 
+    /**
+     * Adds new messages to bottom of list at once, e.g. messages received after reconnect.
+     * Date headers are built in one pass, inserted items are notified once and list is scrolled at most once.
+     * Like {@link #addToStart(IMessage, boolean)}, waits for the newest page if data source is set.
+     *
+     * @param messages new messages from newest to oldest, all of them newer than messages in list.
+     * @param reverse  {@code true} if messages are in chronological order and need to be reversed.
+     * @param scroll   {@code true} if need to scroll list to bottom when messages added.
+     */
+    public void addToStart(List<MESSAGE> messages, boolean reverse, boolean scroll) {
+        if (messages.isEmpty()) return;
+
+        if (reverse) Collections.reverse(messages);
+        if (pager.deferNewest(messages)) return;
+        addNewest(messages, scroll);
+    }
+
     /**
      * Adds messages list in chronological order. Use this method to add history.
      *
@@ -172,18 +300,98 @@ public class MessagesListAdapter<MESSAGE extends IMessage>
 
         if (reverse) Collections.reverse(messages);
 
-        if (!items.isEmpty()) {
-            int lastItemPosition = items.size() - 1;
-            Date lastItem = (Date) items.get(lastItemPosition).item;
-            if (DateFormatter.isSameDay(messages.get(0).getCreatedAt(), lastItem)) {
-                items.remove(lastItemPosition);
+        checkDayKeys();
+        if (!store.isEmpty()) {
+            int lastItemPosition = store.size() - 1;
+            if (store.isHeader(lastItemPosition)
+                    && store.getDayKey(lastItemPosition) == DateFormatter.toEpochDay(messages.get(0).getCreatedAt())) {
+                store.remove(lastItemPosition);
                 notifyItemRemoved(lastItemPosition);
             }
         }
 
-        int oldSize = items.size();
+        int oldSize = store.size();
         generateDateHeaders(messages);
-        notifyItemRangeInserted(oldSize, items.size() - oldSize);
+        notifyItemRangeInserted(oldSize, store.size() - oldSize);
+        spannedTextCache.precompute(messages);
+        if (textLayoutCache != null) {
+            textLayoutCache.precompute(messages, senderId);
+        }
+    }
+
+    /**
+     * Inserts message to its place by creation date, e.g. a message which came late after reconnect.
+     * Messages with the same date are ordered by id. Does nothing if message with the same id is already in list.
+     *
+     * @param message message to insert.
+     */
+    public void insert(MESSAGE message) {
+        insertAll(Collections.singletonList(message));
+    }
+
+    /**
+     * Inserts messages to their places by creation date, see {@link #insert(IMessage)}. Position of each run
+     * of messages is found by binary search, date headers are fixed only around inserted messages and each
+     * contiguous run of inserted items is notified once.
+     * <p>
+     * If data source is set, messages newer than the loaded ones wait until the newest page is loaded,
+     * and messages older than the loaded ones are skipped until the oldest page is loaded: they are expected
+     * to come with the pages, otherwise the range between them and loaded messages wouldn't be loaded.
+     *
+     * @param messages messages to insert in any order.
+     */
+    public void insertAll(List<MESSAGE> messages) {
+        if (messages.isEmpty()) return;
+        List<MESSAGE> sorted = new ArrayList<>(messages.size());
+        HashSet<String> ids = new HashSet<>();
+        for (MESSAGE message : messages) {
+            if (store.indexOf(message.getId()) == -1 && ids.add(message.getId())) {
+                sorted.add(message);
+            }
+        }
+        if (!pager.isAtNewest() || !pager.isAtOldest()) {
+            sorted = withinLoadedRange(sorted);
+        }
+        if (sorted.isEmpty()) return;
+        Collections.sort(sorted, NEWEST_FIRST);
+
+        checkDayKeys();
+        int from = 0;
+        for (int i = 0; i < sorted.size(); i++) {
+            int position = findInsertPosition(sorted.get(i), from);
+            // messages which fall into the same gap between loaded ones are inserted together
+            int end = i + 1;
+            while (end < sorted.size() && (position == store.size()
+                    || NEWEST_FIRST.compare(sorted.get(end), (IMessage) store.get(position)) < 0)) {
+                end++;
+            }
+            from = insertRun(sorted, i, end, position);
+            i = end - 1;
+        }
+        spannedTextCache.precompute(sorted);
+        if (textLayoutCache != null) {
+            textLayoutCache.precompute(sorted, senderId);
+        }
+    }
+
+    /**
+     * Replaces all messages with the new snapshot. Date headers and the difference with current
+     * items are calculated in background, then only changed items are notified, so scroll position
+     * and animations are kept. If a newer snapshot is submitted before the previous one is applied,
+     * the previous one is discarded.
+     * <p>
+     * Messages added to or deleted from the adapter while the difference is calculated stay added
+     * or deleted: they are merged into the snapshot by creation date and the difference is calculated
+     * again. If messages keep coming, after a few attempts the difference is calculated on the main thread,
+     * so the snapshot is always applied.
+     *
+     * @param messages new messages list.
+     * @param reverse  {@code true} if need to reverse messages before submitting.
+     */
+    public void submitMessages(List<MESSAGE> messages, boolean reverse) {
+        List<MESSAGE> snapshot = new ArrayList<>(messages);
+        if (reverse) Collections.reverse(snapshot);
+        submit(snapshot, ++submitGeneration, 0);
     }
 
     /**
@@ -195,6 +403,17 @@ public class MessagesListAdapter<MESSAGE extends IMessage>
         return update(message.getId(), message);
     }
 
+    /**
+     * Updates message by its id and passes the payload to the holder, so that only the changed part
+     * is rebound (see {@link MessageHolders.BaseMessageViewHolder#onBind(IMessage, List)}).
+     *
+     * @param message updated message object.
+     * @param payload description of the change, e.g. the new status of the message.
+     */
+    public boolean update(MESSAGE message, Object payload) {
+        return update(message.getId(), message, payload);
+    }
+
     /**
      * Updates message by old identifier (use this method if id has changed). Otherwise use {@link #update(IMessage)}
      *
@@ -202,11 +421,30 @@ public class MessagesListAdapter<MESSAGE extends IMessage>
      * @param newMessage new message object.
      */
     public boolean update(String oldId, MESSAGE newMessage) {
+        return update(oldId, newMessage, null);
+    }
+
+    /**
+     * Updates message by old identifier and passes the payload to the holder, so that only the changed part
+     * is rebound. The whole message is rebound anyway if its day has changed.
+     *
+     * @param oldId      an identifier of message to update.
+     * @param newMessage new message object.
+     * @param payload    description of the change or {@code null} to rebind the whole message.
+     */
+    public boolean update(String oldId, MESSAGE newMessage, Object payload) {
         int position = getMessagePositionById(oldId);
         if (position >= 0) {
-            Wrapper<MESSAGE> element = new Wrapper<>(newMessage);
-            items.set(position, element);
-            notifyItemChanged(position);
+            checkDayKeys();
+            int oldDayKey = store.getDayKey(position);
+            int dayKey = DateFormatter.toEpochDay(newMessage.getCreatedAt());
+            boolean isSelected = store.isSelected(position);
+            store.set(position, newMessage, dayKey, viewTypeOf(newMessage));
+            store.setSelected(position, isSelected);
+            notifyItemChanged(position, oldDayKey != dayKey ? null : payload);
+            if (oldDayKey != dayKey) {
+                repairDateHeaders(position, position + 1);
+            }
             return true;
         } else {
             return false;
@@ -220,12 +458,21 @@ public class MessagesListAdapter<MESSAGE extends IMessage>
      */
     public void updateAndMoveToStart(MESSAGE newMessage) {
         int position = getMessagePositionById(newMessage.getId());
-        if (position >= 0) {
-            Wrapper<MESSAGE> element = new Wrapper<>(newMessage);
-            items.remove(position);
-            items.add(0, element);
+        if (position >= 0 && !pager.isAtNewest()) {
+            // it can't become the newest loaded message until the newest page is loaded
+            deleteById(newMessage.getId());
+            pager.deferNewest(Collections.singletonList(newMessage));
+        } else if (position >= 0) {
+            checkDayKeys();
+            boolean isSelected = store.isSelected(position);
+            store.remove(position);
+            store.add(0, newMessage, dayKeyOf(newMessage), viewTypeOf(newMessage));
+            store.setSelected(0, isSelected);
             notifyItemMoved(position, 0);
             notifyItemChanged(0);
+            // the message left one group and joined another, each place is repaired once
+            repairDateHeaders(position + 1, position + 1);
+            repairDateHeaders(0, 1);
         }
     }
 
@@ -273,18 +520,15 @@ public class MessagesListAdapter<MESSAGE extends IMessage>
      * @param messages messages list to delete.
      */
     public void delete(List<MESSAGE> messages) {
-        boolean result = false;
+        int[] positions = new int[messages.size()];
+        int count = 0;
         for (MESSAGE message : messages) {
             int index = getMessagePositionById(message.getId());
             if (index >= 0) {
-                items.remove(index);
-                notifyItemRemoved(index);
-                result = true;
+                positions[count++] = index;
             }
         }
-        if (result) {
-            recountDateHeaders();
-        }
+        deleteAtPositions(positions, count);
     }
 
     /**
@@ -295,9 +539,14 @@ public class MessagesListAdapter<MESSAGE extends IMessage>
     public void deleteById(String id) {
         int index = getMessagePositionById(id);
         if (index >= 0) {
-            items.remove(index);
-            notifyItemRemoved(index);
-            recountDateHeaders();
+            // header of the message's day goes away with its last message
+            int count = index + 1 < store.size()
+                    && store.isHeader(index + 1)
+                    && (index == 0 || store.isHeader(index - 1)) ? 2 : 1;
+            int selectedCount = store.getSelectedCount();
+            store.removeRange(index, index + count);
+            notifyItemRangeRemoved(index, count);
+            onSelectedCountChanged(selectedCount);
         }
     }
 
@@ -307,18 +556,15 @@ public class MessagesListAdapter<MESSAGE extends IMessage>
      * @param ids array of identifiers of messages to delete.
      */
     public void deleteByIds(String[] ids) {
-        boolean result = false;
+        int[] positions = new int[ids.length];
+        int count = 0;
         for (String id : ids) {
             int index = getMessagePositionById(id);
             if (index >= 0) {
-                items.remove(index);
-                notifyItemRemoved(index);
-                result = true;
+                positions[count++] = index;
             }
         }
-        if (result) {
-            recountDateHeaders();
-        }
+        deleteAtPositions(positions, count);
     }
 
     /**
@@ -327,7 +573,7 @@ public class MessagesListAdapter<MESSAGE extends IMessage>
      * @return {@code true} if size is 0, otherwise {@code false}
      */
     public boolean isEmpty() {
-        return items.isEmpty();
+        return store.isEmpty();
     }
 
     /**
@@ -341,11 +587,11 @@ public class MessagesListAdapter<MESSAGE extends IMessage>
      * Clears the messages list.
      */
     public void clear(boolean notifyDataSetChanged) {
-        if (items != null) {
-            items.clear();
-            if (notifyDataSetChanged) {
-                notifyDataSetChanged();
-            }
+        submitGeneration++;
+        pager.reset();
+        store.clear();
+        if (notifyDataSetChanged) {
+            notifyDataSetChanged();
         }
     }
 
@@ -377,15 +623,53 @@ public class MessagesListAdapter<MESSAGE extends IMessage>
      */
     @SuppressWarnings("unchecked")
     public ArrayList<MESSAGE> getSelectedMessages() {
-        ArrayList<MESSAGE> selectedMessages = new ArrayList<>();
-        for (Wrapper wrapper : items) {
-            if (wrapper.item instanceof IMessage && wrapper.isSelected) {
-                selectedMessages.add((MESSAGE) wrapper.item);
-            }
+        ArrayList<MESSAGE> selectedMessages = new ArrayList<>(store.getSelectedCount());
+        for (int i = store.nextSelected(0); i >= 0; i = store.nextSelected(i + 1)) {
+            selectedMessages.add((MESSAGE) store.get(i));
         }
         return selectedMessages;
     }
 
+    /**
+     * Returns count of selected messages.
+     *
+     * @return count of selected messages.
+     */
+    public int getSelectedMessagesCount() {
+        return store.getSelectedCount();
+    }
+
+    /**
+     * Returns whether selection mode is enabled, i.e. clicks on messages select them.
+     *
+     * @return {@code true} if selection mode is enabled.
+     */
+    public boolean isSelectionModeEnabled() {
+        return isSelectionModeEnabled;
+    }
+
+    /**
+     * Selects all messages. Has no effect if selection mode is disabled.
+     */
+    public void selectAll() {
+        if (selectionListener == null || store.isEmpty()) return;
+        setSelected(0, store.size() - 1, true);
+    }
+
+    /**
+     * Selects messages between two messages inclusive, e.g. from last selected one to long clicked one.
+     * Has no effect if selection mode is disabled or any of messages isn't in the list.
+     *
+     * @param fromId identifier of the first message of range.
+     * @param toId   identifier of the last message of range.
+     */
+    public void selectRange(String fromId, String toId) {
+        int from = getMessagePositionById(fromId);
+        int to = getMessagePositionById(toId);
+        if (selectionListener == null || from < 0 || to < 0) return;
+        setSelected(Math.min(from, to), Math.max(from, to), true);
+    }
+
     /**
      * Returns selected messages text and do {@link #unselectAllItems()} for you.
      *
@@ -418,15 +702,18 @@ public class MessagesListAdapter<MESSAGE extends IMessage>
      * Unselect all of the selected messages. Notifies {@link SelectionListener} with zero count.
      */
     public void unselectAllItems() {
-        for (int i = 0; i < items.size(); i++) {
-            Wrapper wrapper = items.get(i);
-            if (wrapper.isSelected) {
-                wrapper.isSelected = false;
-                notifyItemChanged(i);
+        int runStart = -1;
+        int runEnd = -1;
+        for (int i = store.nextSelected(0); i >= 0; i = store.nextSelected(i + 1)) {
+            store.setSelected(i, false);
+            if (i != runEnd) {
+                if (runStart >= 0) notifyItemRangeChanged(runStart, runEnd - runStart, PAYLOAD_SELECTION);
+                runStart = i;
             }
+            runEnd = i + 1;
         }
+        if (runStart >= 0) notifyItemRangeChanged(runStart, runEnd - runStart, PAYLOAD_SELECTION);
         isSelectionModeEnabled = false;
-        selectedItemsCount = 0;
         notifySelectionChanged();
     }
 
@@ -437,7 +724,9 @@ public class MessagesListAdapter<MESSAGE extends IMessage>
     public void deleteSelectedMessages() {
         List<MESSAGE> selectedMessages = getSelectedMessages();
         delete(selectedMessages);
-        unselectAllItems();
+        if (isSelectionModeEnabled) {
+            unselectAllItems();
+        }
     }
 
     /**
@@ -466,6 +755,7 @@ public class MessagesListAdapter<MESSAGE extends IMessage>
      */
     public void registerViewClickListener(int viewId, OnMessageViewClickListener<MESSAGE> onMessageViewClickListener) {
         this.viewClickListenersArray.append(viewId, onMessageViewClickListener);
+        viewClickListenersVersion++;
     }
 
     /**
@@ -495,6 +785,117 @@ public class MessagesListAdapter<MESSAGE extends IMessage>
         this.loadMoreListener = loadMoreListener;
     }
 
+    /**
+     * Returns queue which accepts new, updated and deleted messages from any thread, e.g. from socket
+     * or sync callbacks. Queued changes are applied once per frame, so bursts don't block the main thread.
+     * New messages are placed by creation date (see {@link #insertAll(List)}).
+     *
+     * @return ingestion queue of this adapter.
+     */
+    public IngestionQueue<MESSAGE> getIngestionQueue() {
+        return ingestionQueue;
+    }
+
+    /**
+     * Sets source of messages pages. The newest messages are loaded at once, older and newer pages are
+     * loaded in background when list is scrolled closer than prefetch distance to their end.
+     * Replaces {@link #setLoadMoreListener(OnLoadMoreListener)}, which isn't notified while data source is set.
+     *
+     * @param dataSource data source or {@code null} to stop paging.
+     */
+    public void setDataSource(MessagesDataSource<MESSAGE> dataSource) {
+        setDataSource(dataSource, MessagesPager.DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Sets source of messages pages. See {@link #setDataSource(MessagesDataSource)}.
+     *
+     * @param dataSource data source or {@code null} to stop paging.
+     * @param pageSize   count of messages requested by one load.
+     */
+    public void setDataSource(MessagesDataSource<MESSAGE> dataSource, int pageSize) {
+        pager.setDataSource(dataSource, pageSize);
+    }
+
+    /**
+     * Sets count of items between the last visible one and the end of list, at which the next page is requested.
+     * Default value is 5.
+     *
+     * @param prefetchDistance prefetch distance in items.
+     */
+    public void setPrefetchDistance(int prefetchDistance) {
+        pager.setPrefetchDistance(prefetchDistance);
+    }
+
+    /**
+     * Limits count of messages kept in the adapter while paging with {@link MessagesDataSource}. When more
+     * messages are loaded, the ones at the end farther from the visible range are evicted and loaded again
+     * from data source when the list is scrolled back. Limit should be several pages larger than
+     * the count of visible messages.
+     *
+     * @param maxMessages max count of loaded messages or {@code 0} to keep all of them (default).
+     */
+    public void setMaxLoadedMessages(int maxMessages) {
+        pager.setMaxMessages(maxMessages);
+    }
+
+    /**
+     * Scrolls list to the message with the given id, e.g. to a search result or a quoted message.
+     * If the message isn't loaded, the page around it is requested from {@link MessagesDataSource#loadAround(String, int)}.
+     * When it's loaded, it replaces current messages and the list is scrolled to the message, then newer
+     * and older pages are loaded as the list is scrolled.
+     *
+     * @param id id of the message.
+     * @return {@code true} if the message is shown or is loading, {@code false} if it isn't loaded and there is no data source.
+     */
+    public boolean scrollToMessage(String id) {
+        if (scrollToLoadedMessage(id)) return true;
+        return pager.loadAround(id);
+    }
+
+    /**
+     * Reloads the newest messages from data source, current messages are replaced when they are loaded.
+     */
+    public void refresh() {
+        pager.refresh();
+    }
+
+    /**
+     * Repeats failed loads of data source.
+     */
+    public void retry() {
+        pager.retry();
+    }
+
+    /**
+     * Returns state of loading in the given direction.
+     *
+     * @param direction direction of loading.
+     * @return load state.
+     */
+    public MessagesDataSource.LoadState getLoadState(MessagesDataSource.Direction direction) {
+        return pager.getState(direction);
+    }
+
+    /**
+     * Sets callback to be invoked when state of data source loading is changed, e.g. to show progress or retry button.
+     *
+     * @param loadStateChangedListener listener.
+     */
+    public void setOnLoadStateChangedListener(OnLoadStateChangedListener loadStateChangedListener) {
+        this.loadStateChangedListener = loadStateChangedListener;
+    }
+
+    /**
+     * Sets callback for comparing contents of messages with the same id in {@link #submitMessages(List, boolean)}.
+     * By default messages are compared with {@code equals()}.
+     *
+     * @param diffCallback callback.
+     */
+    public void setDiffCallback(DiffCallback<MESSAGE> diffCallback) {
+        this.diffCallback = diffCallback;
+    }
+
     /**
      * Sets custom {@link DateFormatter.Formatter} for text representation of date headers.
      */
@@ -502,96 +903,527 @@ public class MessagesListAdapter<MESSAGE extends IMessage>
         this.dateHeadersFormatter = dateHeadersFormatter;
     }
 
+    /**
+     * Adds processor for spans of message text (e.g. mentions or hashtags). Text of message is processed
+     * once after links highlighting and kept until the text changes, not on every bind.
+     *
+     * @param processor span processor.
+     */
+    public void addSpanProcessor(SpanProcessor<MESSAGE> processor) {
+        spannedTextCache.addProcessor(processor);
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Removes processor added by {@link #addSpanProcessor(SpanProcessor)}.
+     *
+     * @param processor span processor.
+     */
+    public void removeSpanProcessor(SpanProcessor<MESSAGE> processor) {
+        spannedTextCache.removeProcessor(processor);
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Enables building text layouts of messages added by {@link #addToStart(IMessage, boolean)} and
+     * {@link #addToEnd(List, boolean)} in background. Plain text is measured with the paint of default
+     * bubbles and the list width without bubble paddings. Default holders don't use built layouts,
+     * they are available for custom holders via {@link #getPrecomputedTextLayout(IMessage)}.
+     *
+     * @param cacheSize max count of kept layouts, least recently used ones are evicted.
+     */
+    public void enableTextLayoutPrecomputing(int cacheSize) {
+        textLayoutCache = new TextLayoutCache(cacheSize);
+        textLayoutCache.setStyle(messagesListStyle, getListWidth());
+    }
+
+    /**
+     * Disables building text layouts in background and drops built ones.
+     */
+    public void disableTextLayoutPrecomputing() {
+        if (textLayoutCache != null) {
+            textLayoutCache.clear();
+            textLayoutCache = null;
+        }
+    }
+
+    /**
+     * Returns layout of the message text built in background, if it's ready.
+     *
+     * @param message message.
+     * @return text layout or {@code null}.
+     */
+    @Nullable
+    public Layout getPrecomputedTextLayout(MESSAGE message) {
+        if (textLayoutCache == null) return null;
+        return textLayoutCache.get(message, message.getUser().getId().contentEquals(senderId));
+    }
+
     /*
      * PRIVATE METHODS
      * */
-    private void recountDateHeaders() {
-        List<Integer> indicesToDelete = new ArrayList<>();
-
-        for (int i = 0; i < items.size(); i++) {
-            Wrapper wrapper = items.get(i);
-            if (wrapper.item instanceof Date) {
-                if (i == 0) {
-                    indicesToDelete.add(i);
+    /*
+     * Restores date headers between messages in [from, to) and at both edges of the range:
+     * drops headers which have no messages above them or separate messages of the same day,
+     * adds or fixes the header of every message group which ends in the range. Headers are fixed
+     * in the store first, then the changed span is dispatched at once.
+     * */
+    private void repairDateHeaders(int from, int to) {
+        while (from > 0 && store.isHeader(from - 1)) from--;
+        while (to < store.size() && store.isHeader(to)) to++;
+
+        int firstChanged = -1;
+        int changedEnd = 0;
+        int shift = 0;
+        int position = from;
+        IMessage previous = from > 0 ? (IMessage) store.get(from - 1) : null;
+        int previousDay = from > 0 ? store.getDayKey(from - 1) : 0;
+        while (true) {
+            int headers = 0;
+            while (position + headers < to + shift && store.isHeader(position + headers)) headers++;
+            int next = position + headers;
+            boolean isHeaderNeeded = previous != null
+                    && (next == store.size() || store.getDayKey(next) != previousDay);
+
+            int kept = isHeaderNeeded ? Math.min(headers, 1) : 0;
+            // a kept header which is already right isn't rebound
+            int gapChanged = position + kept;
+            boolean isChanged = headers > kept;
+            if (isChanged) {
+                store.removeRange(position + kept, position + headers);
+                shift -= headers - kept;
+            }
+            if (isHeaderNeeded && (kept == 0 || store.getDayKey(position) != previousDay)) {
+                Date date = previous.getCreatedAt();
+                if (kept == 0) {
+                    store.add(position, date, previousDay, viewTypeOf(date));
+                    shift++;
                 } else {
-                    if (items.get(i - 1).item instanceof Date) {
-                        indicesToDelete.add(i);
+                    store.set(position, date, previousDay, viewTypeOf(date));
+                }
+                kept = 1;
+                gapChanged = position;
+                isChanged = true;
+            }
+            if (isChanged) {
+                if (firstChanged == -1) firstChanged = gapChanged;
+                changedEnd = position + kept;
+            }
+
+            position += kept;
+            if (position >= to + shift) break;
+            previous = (IMessage) store.get(position);
+            previousDay = store.getDayKey(position);
+            position++;
+        }
+
+        if (firstChanged == -1) return;
+        int newCount = changedEnd - firstChanged;
+        int oldCount = newCount - shift;
+        int common = Math.min(oldCount, newCount);
+        if (common > 0) {
+            notifyItemRangeChanged(firstChanged, common);
+        }
+        if (newCount > oldCount) {
+            notifyItemRangeInserted(firstChanged + common, newCount - oldCount);
+        } else if (oldCount > newCount) {
+            notifyItemRangeRemoved(firstChanged + common, oldCount - newCount);
+        }
+    }
+
+    /*
+     * Removes items at the given positions in one pass: removed ranges are collected first, then
+     * the store compacts items between them and closes the gap at once. Date headers left without
+     * messages can only appear right after a removed item, so they are dropped during the same pass.
+     * Removed ranges are dispatched from the end so that every notified position is still valid.
+     * */
+    private void deleteAtPositions(int[] positions, int count) {
+        if (count == 0) return;
+        Arrays.sort(positions, 0, count);
+
+        int start = positions[0];
+        int end = Math.min(store.size(), positions[count - 1] + 2);
+        int[] runStarts = new int[count];
+        int[] runLengths = new int[count];
+        int runs = 0;
+
+        boolean isPreviousKeptHeader = start == 0 || store.isHeader(start - 1);
+        int next = 0;
+        for (int i = start; i < end; i++) {
+            boolean remove;
+            if (next < count && positions[next] == i) {
+                while (next < count && positions[next] == i) next++;
+                remove = true;
+            } else {
+                remove = store.isHeader(i) && isPreviousKeptHeader;
+            }
+
+            if (!remove) {
+                isPreviousKeptHeader = store.isHeader(i);
+            } else if (runs > 0 && runStarts[runs - 1] + runLengths[runs - 1] == i) {
+                runLengths[runs - 1]++;
+            } else {
+                runStarts[runs] = i;
+                runLengths[runs] = 1;
+                runs++;
+            }
+        }
+
+        int selectedCount = store.getSelectedCount();
+        store.removeRanges(runStarts, runLengths, runs);
+        for (int i = runs - 1; i >= 0; i--) {
+            notifyItemRangeRemoved(runStarts[i], runLengths[i]);
+        }
+        onSelectedCountChanged(selectedCount);
+    }
+
+    /*
+     * Returns position of the first message older than the given one, starting from fromPosition.
+     * Date header is compared as the last message of its day, so the result is always a message or the end.
+     * */
+    private int findInsertPosition(IMessage message, int fromPosition) {
+        int low = fromPosition;
+        int high = store.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int position = store.isHeader(middle) ? middle - 1 : middle;
+            if (NEWEST_FIRST.compare(message, (IMessage) store.get(position)) < 0) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    /*
+     * Inserts messages [from, to) of the sorted list before the message at position. Messages of the day
+     * which ends right above this position go before its header, others go after it with their own headers,
+     * so existing items are never changed. Returns position after the last inserted message.
+     * */
+    private int insertRun(List<MESSAGE> messages, int from, int to, int position) {
+        int i = from;
+        int next = position;
+        boolean isAfterHeader = position > 0 && store.isHeader(position - 1);
+        if (isAfterHeader) {
+            int headerPosition = position - 1;
+            int day = store.getDayKey(headerPosition);
+            int inserted = 0;
+            for (; i < to && dayKeyOf(messages.get(i)) == day; i++, inserted++) {
+                MESSAGE message = messages.get(i);
+                store.add(headerPosition + inserted, message, day, viewTypeOf(message));
+            }
+            if (inserted > 0) {
+                notifyItemRangeInserted(headerPosition, inserted);
+            }
+            next = position + inserted;
+            if (i == to) return next - 1;
+        }
+
+        int start = next;
+        Date previousDate = position > 0 && !isAfterHeader ? ((IMessage) store.get(position - 1)).getCreatedAt() : null;
+        int previousDay = previousDate != null ? store.getDayKey(position - 1) : 0;
+        for (; i < to; i++) {
+            MESSAGE message = messages.get(i);
+            int day = dayKeyOf(message);
+            if (previousDate != null && day != previousDay) {
+                store.add(next++, previousDate, previousDay, viewTypeOf(previousDate));
+            }
+            store.add(next++, message, day, viewTypeOf(message));
+            previousDate = message.getCreatedAt();
+            previousDay = day;
+        }
+        int last = next;
+        if (next == store.size() || store.getDayKey(next) != previousDay) {
+            store.add(next++, previousDate, previousDay, viewTypeOf(previousDate));
+        }
+        notifyItemRangeInserted(start, next - start);
+        return last;
+    }
+
+    private static List<Object> withDateHeaders(List<? extends IMessage> messages) {
+        List<Object> result = new ArrayList<>(messages.size() + messages.size() / 8 + 1);
+        int nextDay = messages.isEmpty() ? 0 : DateFormatter.toEpochDay(messages.get(0).getCreatedAt());
+        for (int i = 0; i < messages.size(); i++) {
+            IMessage message = messages.get(i);
+            int day = nextDay;
+            result.add(message);
+            if (messages.size() > i + 1) {
+                nextDay = DateFormatter.toEpochDay(messages.get(i + 1).getCreatedAt());
+                if (day != nextDay) {
+                    result.add(message.getCreatedAt());
+                }
+            } else {
+                result.add(message.getCreatedAt());
+            }
+        }
+        return result;
+    }
+
+    private void submit(final List<MESSAGE> snapshot, final int generation, final int attempt) {
+        final int version = store.getVersion();
+        final Object[] oldItems = currentItems();
+        final DiffCallback<MESSAGE> callback = diffCallback;
+
+        TaskExecutors.background().execute(new Runnable() {
+            @Override
+            public void run() {
+                if (generation != submitGeneration) return;
+
+                final List<Object> newItems = withDateHeaders(snapshot);
+                final DiffUtil.DiffResult result = DiffUtil.calculateDiff(
+                        new ItemsDiffCallback<>(oldItems, newItems, callback));
+
+                TaskExecutors.postToMainThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != submitGeneration) return;
+                        if (version == store.getVersion()) {
+                            applySubmittedItems(oldItems, newItems, result);
+                            return;
+                        }
+                        // items were added or deleted while diff was calculating
+                        List<MESSAGE> rebased = rebase(snapshot, oldItems);
+                        if (attempt < MAX_SUBMIT_ATTEMPTS - 1) {
+                            submit(rebased, generation, attempt + 1);
+                        } else {
+                            Object[] items = currentItems();
+                            List<Object> rebasedItems = withDateHeaders(rebased);
+                            applySubmittedItems(items, rebasedItems, DiffUtil.calculateDiff(
+                                    new ItemsDiffCallback<>(items, rebasedItems, diffCallback)));
+                        }
                     }
+                });
+            }
+        });
+    }
+
+    private Object[] currentItems() {
+        Object[] items = new Object[store.size()];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = store.get(i);
+        }
+        return items;
+    }
+
+    /*
+     * Returns the snapshot without messages deleted from the adapter since oldItems were taken
+     * and with messages added since then, which are merged in by creation date.
+     * */
+    @SuppressWarnings("unchecked")
+    private List<MESSAGE> rebase(List<MESSAGE> snapshot, Object[] oldItems) {
+        HashSet<String> oldIds = new HashSet<>();
+        for (Object item : oldItems) {
+            if (item instanceof IMessage) oldIds.add(((IMessage) item).getId());
+        }
+        HashSet<String> snapshotIds = new HashSet<>();
+        for (MESSAGE message : snapshot) {
+            snapshotIds.add(message.getId());
+        }
+        List<MESSAGE> added = new ArrayList<>();
+        for (int i = 0; i < store.size(); i++) {
+            if (store.isHeader(i)) continue;
+            MESSAGE message = (MESSAGE) store.get(i);
+            if (!oldIds.contains(message.getId()) && !snapshotIds.contains(message.getId())) {
+                added.add(message);
+            }
+        }
+        Collections.sort(added, NEWEST_FIRST);
+
+        List<MESSAGE> result = new ArrayList<>(snapshot.size() + added.size());
+        int next = 0;
+        for (MESSAGE message : snapshot) {
+            if (oldIds.contains(message.getId()) && store.indexOf(message.getId()) == -1) continue;
+            while (next < added.size() && NEWEST_FIRST.compare(added.get(next), message) < 0) {
+                result.add(added.get(next++));
+            }
+            result.add(message);
+        }
+        result.addAll(added.subList(next, added.size()));
+        return result;
+    }
+
+    /*
+     * Messages updated in place while the diff was calculating are newer than the snapshot,
+     * so they are kept (unless their day changed) and rebound.
+     * */
+    private void applySubmittedItems(Object[] oldItems, List<Object> newItems, DiffUtil.DiffResult result) {
+        checkDayKeys();
+        int selectedCount = store.getSelectedCount();
+        HashSet<String> selectedIds = new HashSet<>();
+        for (int i = store.nextSelected(0); i >= 0; i = store.nextSelected(i + 1)) {
+            selectedIds.add(((IMessage) store.get(i)).getId());
+        }
+        HashMap<String, Object> updated = new HashMap<>();
+        for (int i = 0; i < oldItems.length; i++) {
+            Object item = store.get(i);
+            if (item != oldItems[i] && item instanceof IMessage) {
+                updated.put(((IMessage) item).getId(), item);
+            }
+        }
+
+        store.clear();
+        List<Integer> updatedPositions = new ArrayList<>(updated.size());
+        for (Object item : newItems) {
+            int position = store.size();
+            int dayKey = dayKeyOf(item);
+            if (item instanceof IMessage && !updated.isEmpty()) {
+                Object current = updated.get(((IMessage) item).getId());
+                if (current != null && current != item && dayKeyOf(current) == dayKey) {
+                    item = current;
+                    updatedPositions.add(position);
                 }
             }
+            store.add(position, item, dayKey, viewTypeOf(item));
+            if (item instanceof IMessage && selectedIds.contains(((IMessage) item).getId())) {
+                store.setSelected(position, true);
+            }
+        }
+        result.dispatchUpdatesTo(this);
+        for (int position : updatedPositions) {
+            notifyItemChanged(position);
         }
+        onSelectedCountChanged(selectedCount);
+    }
 
-        Collections.reverse(indicesToDelete);
-        for (int i : indicesToDelete) {
-            items.remove(i);
-            notifyItemRemoved(i);
+    /*
+     * Adds messages which are newer than all loaded ones, from newest to oldest.
+     * */
+    private void addNewest(List<MESSAGE> messages, boolean scroll) {
+        if (messages.isEmpty()) return;
+        checkDayKeys();
+        // items are added at 0 from the oldest one, so every add is O(1) for the store
+        int oldSize = store.size();
+        int last = messages.size() - 1;
+        int day = dayKeyOf(messages.get(last));
+        if (!isPreviousSameDate(0, day)) {
+            Date date = messages.get(last).getCreatedAt();
+            store.add(0, date, day, viewTypeOf(date));
+        }
+        for (int i = last; i >= 0; i--) {
+            MESSAGE message = messages.get(i);
+            int messageDay = i == last ? day : dayKeyOf(message);
+            if (messageDay != day) {
+                Date date = message.getCreatedAt();
+                store.add(0, date, messageDay, viewTypeOf(date));
+                day = messageDay;
+            }
+            store.add(0, message, messageDay, viewTypeOf(message));
+        }
+        notifyItemRangeInserted(0, store.size() - oldSize);
+        spannedTextCache.precompute(messages);
+        if (textLayoutCache != null) {
+            textLayoutCache.precompute(messages, senderId);
+        }
+        if (layoutManager != null && scroll) {
+            layoutManager.scrollToPosition(0);
         }
     }
 
     protected void generateDateHeaders(List<MESSAGE> messages) {
+        int nextDay = messages.isEmpty() ? 0 : DateFormatter.toEpochDay(messages.get(0).getCreatedAt());
         for (int i = 0; i < messages.size(); i++) {
             MESSAGE message = messages.get(i);
-            this.items.add(new Wrapper<>(message));
+            int day = nextDay;
+            store.add(store.size(), message, day, viewTypeOf(message));
             if (messages.size() > i + 1) {
-                MESSAGE nextMessage = messages.get(i + 1);
-                if (!DateFormatter.isSameDay(message.getCreatedAt(), nextMessage.getCreatedAt())) {
-                    this.items.add(new Wrapper<>(message.getCreatedAt()));
+                nextDay = DateFormatter.toEpochDay(messages.get(i + 1).getCreatedAt());
+                if (day != nextDay) {
+                    store.add(store.size(), message.getCreatedAt(), day, viewTypeOf(message.getCreatedAt()));
                 }
             } else {
-                this.items.add(new Wrapper<>(message.getCreatedAt()));
+                store.add(store.size(), message.getCreatedAt(), day, viewTypeOf(message.getCreatedAt()));
             }
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private int getMessagePositionById(String id) {
-        for (int i = 0; i < items.size(); i++) {
-            Wrapper wrapper = items.get(i);
-            if (wrapper.item instanceof IMessage) {
-                MESSAGE message = (MESSAGE) wrapper.item;
-                if (message.getId().contentEquals(id)) {
-                    return i;
-                }
+    /*
+     * Day keys are calculated in default time zone, so they are recalculated after it changes.
+     * */
+    private void checkDayKeys() {
+        int version = DateFormatter.getTimeZoneVersion();
+        if (dayKeysVersion != version) {
+            dayKeysVersion = version;
+            for (int i = 0; i < store.size(); i++) {
+                store.setDayKey(i, dayKeyOf(store.get(i)));
             }
         }
-        return -1;
     }
 
-    @SuppressWarnings("unchecked")
-    private boolean isPreviousSameDate(int position, Date dateToCompare) {
-        if (items.size() <= position) return false;
-        if (items.get(position).item instanceof IMessage) {
-            Date previousPositionDate = ((MESSAGE) items.get(position).item).getCreatedAt();
-            return DateFormatter.isSameDay(dateToCompare, previousPositionDate);
-        } else return false;
+    /*
+     * View types are calculated once when items are added or replaced, RecyclerView asks for them
+     * many times per frame during scroll and prefetch.
+     * */
+    private int viewTypeOf(Object item) {
+        return holders.getViewType(item, senderId);
+    }
+
+    private static int dayKeyOf(Object item) {
+        if (item instanceof IMessage) {
+            return DateFormatter.toEpochDay(((IMessage) item).getCreatedAt());
+        } else if (item instanceof Date) {
+            return DateFormatter.toEpochDay((Date) item);
+        }
+        return 0;
+    }
+
+    private int getMessagePositionById(String id) {
+        return store.indexOf(id);
+    }
+
+    private boolean isPreviousSameDate(int position, int dayKey) {
+        return position < store.size() && !store.isHeader(position) && store.getDayKey(position) == dayKey;
     }
 
     @SuppressWarnings("unchecked")
     private boolean isPreviousSameAuthor(String id, int position) {
         int prevPosition = position + 1;
-        if (items.size() <= prevPosition) return false;
-        else return items.get(prevPosition).item instanceof IMessage
-                && ((MESSAGE) items.get(prevPosition).item).getUser().getId().contentEquals(id);
+        if (store.size() <= prevPosition) return false;
+        else return !store.isHeader(prevPosition)
+                && ((MESSAGE) store.get(prevPosition)).getUser().getId().contentEquals(id);
     }
 
-    private void incrementSelectedItemsCount() {
-        selectedItemsCount++;
-        notifySelectionChanged();
+    /*
+     * Selects or unselects messages in range, changed positions are notified by ranges with
+     * selection payload. A single date header between changed messages doesn't break the range.
+     * */
+    private void setSelected(int fromPosition, int toPosition, boolean isSelected) {
+        int selectedCount = store.getSelectedCount();
+        int runStart = -1;
+        int runEnd = -1;
+        for (int i = fromPosition; i <= toPosition; i++) {
+            if (store.isHeader(i) || store.isSelected(i) == isSelected) continue;
+            store.setSelected(i, isSelected);
+            if (i != runEnd && !(i == runEnd + 1 && store.isHeader(runEnd))) {
+                if (runStart >= 0) notifyItemRangeChanged(runStart, runEnd - runStart, PAYLOAD_SELECTION);
+                runStart = i;
+            }
+            runEnd = i + 1;
+        }
+        if (runStart >= 0) notifyItemRangeChanged(runStart, runEnd - runStart, PAYLOAD_SELECTION);
+        if (isSelected) isSelectionModeEnabled = true;
+        onSelectedCountChanged(selectedCount);
     }
 
-    private void decrementSelectedItemsCount() {
-        selectedItemsCount--;
-        isSelectionModeEnabled = selectedItemsCount > 0;
-
-        notifySelectionChanged();
+    /*
+     * Selected messages may be removed or replaced along with other changes, so listener is notified
+     * when count differs from the one before the change.
+     * */
+    private void onSelectedCountChanged(int oldCount) {
+        int count = store.getSelectedCount();
+        if (count != oldCount) {
+            if (count == 0) isSelectionModeEnabled = false;
+            notifySelectionChanged();
+        }
     }
 
     private void notifySelectionChanged() {
         if (selectionListener != null) {
-            selectionListener.onSelectionChanged(selectedItemsCount);
+            selectionListener.onSelectionChanged(store.getSelectedCount());
         }
     }
 
+
     private void notifyMessageClicked(MESSAGE message) {
         if (onMessageClickListener != null) {
             onMessageClickListener.onMessageClick(message);
@@ -616,41 +1448,47 @@ public class MessagesListAdapter<MESSAGE extends IMessage>
         }
     }
 
-    private View.OnClickListener getMessageClickListener(final Wrapper<MESSAGE> wrapper) {
-        return new View.OnClickListener() {
-            @Override
-            public void onClick(View view) {
-                if (selectionListener != null && isSelectionModeEnabled) {
-                    wrapper.isSelected = !wrapper.isSelected;
+    /*
+     * Holder created for view inflated in background by MessagesList, it's returned to RecycledViewPool.
+     * Going through createViewHolder sets holder's view type for the pool.
+     * */
+    ViewHolder createPreInflatedHolder(ViewGroup parent, int viewType, View itemView) {
+        preInflatedItemView = itemView;
+        try {
+            return createViewHolder(parent, viewType);
+        } finally {
+            preInflatedItemView = null;
+        }
+    }
 
-                    if (wrapper.isSelected) incrementSelectedItemsCount();
-                    else decrementSelectedItemsCount();
+    int[] getHolderViewTypes() {
+        return holders.getViewTypes();
+    }
 
-                    MESSAGE message = (wrapper.item);
-                    notifyItemChanged(getMessagePositionById(message.getId()));
-                } else {
-                    notifyMessageClicked(wrapper.item);
-                    notifyMessageViewClicked(view, wrapper.item);
-                }
-            }
-        };
+    int getHolderLayout(int viewType) {
+        return holders.getLayout(viewType);
     }
 
-    private View.OnLongClickListener getMessageLongClickListener(final Wrapper<MESSAGE> wrapper) {
-        return new View.OnLongClickListener() {
-            @Override
-            public boolean onLongClick(View view) {
-                if (selectionListener == null) {
-                    notifyMessageLongClicked(wrapper.item);
-                    notifyMessageViewLongClicked(view, wrapper.item);
-                    return true;
-                } else {
-                    isSelectionModeEnabled = true;
-                    view.performClick();
-                    return true;
-                }
+    private void attachHolder(MessageHolders.BaseMessageViewHolder holder) {
+        HolderListener listener = new HolderListener(holder);
+        holder.adapter = this;
+        holder.clickListener = listener;
+        holder.itemView.setOnClickListener(listener);
+        holder.itemView.setOnLongClickListener(listener);
+        setViewClickListeners(holder);
+    }
+
+    /*
+     * Registered views are looked up once per holder, they share the holder's listener.
+     * */
+    private void setViewClickListeners(MessageHolders.BaseMessageViewHolder holder) {
+        for (int i = 0; i < viewClickListenersArray.size(); i++) {
+            View view = holder.itemView.findViewById(viewClickListenersArray.keyAt(i));
+            if (view != null) {
+                view.setOnClickListener(holder.clickListener);
             }
-        };
+        }
+        holder.viewClickListenersVersion = viewClickListenersVersion;
     }
 
     private String getSelectedText(Formatter<MESSAGE> formatter, boolean reverse) {
@@ -682,6 +1520,175 @@ public class MessagesListAdapter<MESSAGE extends IMessage>
 
     void setStyle(MessagesListStyle style) {
         this.messagesListStyle = style;
+        spannedTextCache.setAutoLinkMask(style != null ? style.getTextAutoLinkMask() : 0);
+        if (textLayoutCache != null) {
+            textLayoutCache.setStyle(style, getListWidth());
+        }
+    }
+
+    /*
+     * PAGING
+     * */
+    void onLoadStateChanged(MessagesDataSource.Direction direction, MessagesDataSource.LoadState state,
+                            Throwable error) {
+        if (loadStateChangedListener != null) {
+            loadStateChangedListener.onLoadStateChanged(direction, state, error);
+        }
+    }
+
+    String getNewestMessageId() {
+        return store.isEmpty() ? null : ((IMessage) store.get(0)).getId();
+    }
+
+    String getOldestMessageId() {
+        IMessage oldest = getOldestMessage();
+        return oldest == null ? null : oldest.getId();
+    }
+
+    boolean scrollToLoadedMessage(String id) {
+        int position = store.indexOf(id);
+        if (position == -1) return false;
+        if (layoutManager != null) {
+            layoutManager.scrollToPosition(position);
+        }
+        return true;
+    }
+
+    boolean isDateHeader(int position) {
+        return store.isHeader(position);
+    }
+
+    /*
+     * Removes items which are far from the visible range, date headers at the new edge are restored.
+     * */
+    void evict(int fromPosition, int toPosition) {
+        checkDayKeys();
+        int oldSelectedCount = store.getSelectedCount();
+        store.removeRange(fromPosition, toPosition);
+        notifyItemRangeRemoved(fromPosition, toPosition - fromPosition);
+        repairDateHeaders(fromPosition, fromPosition);
+        onSelectedCountChanged(oldSelectedCount);
+    }
+
+    /*
+     * Replaces all items with the first loaded page.
+     * */
+    void setPage(List<MESSAGE> messages) {
+        submitGeneration++;
+        store.clear();
+        notifyDataSetChanged();
+        addToEnd(messages, false);
+    }
+
+    /*
+     * Adds page of older messages, messages which are already in the list are skipped.
+     * */
+    void appendPage(List<MESSAGE> messages) {
+        addToEnd(withoutLoaded(messages), false);
+    }
+
+    /*
+     * Adds page of newer messages without scrolling, messages which are already in the list are skipped.
+     * */
+    void prependPage(List<MESSAGE> messages) {
+        addNewest(withoutLoaded(messages), false);
+    }
+
+    private List<MESSAGE> withinLoadedRange(List<MESSAGE> messages) {
+        List<MESSAGE> result = new ArrayList<>(messages.size());
+        List<MESSAGE> newest = new ArrayList<>();
+        IMessage newestLoaded = store.isEmpty() ? null : (IMessage) store.get(0);
+        IMessage oldestLoaded = getOldestMessage();
+        for (MESSAGE message : messages) {
+            if (!pager.isAtNewest() && (newestLoaded == null || NEWEST_FIRST.compare(message, newestLoaded) < 0)) {
+                newest.add(message);
+            } else if (pager.isAtOldest() || oldestLoaded == null || NEWEST_FIRST.compare(message, oldestLoaded) < 0) {
+                result.add(message);
+            }
+        }
+        pager.deferNewest(newest);
+        return result;
+    }
+
+    private IMessage getOldestMessage() {
+        for (int i = store.size() - 1; i >= 0; i--) {
+            if (!store.isHeader(i)) return (IMessage) store.get(i);
+        }
+        return null;
+    }
+
+    private List<MESSAGE> withoutLoaded(List<MESSAGE> messages) {
+        List<MESSAGE> page = new ArrayList<>(messages.size());
+        for (MESSAGE message : messages) {
+            if (store.indexOf(message.getId()) == -1) {
+                page.add(message);
+            }
+        }
+        return page;
+    }
+
+    /*
+     * Text of message with links and spans of processors, the same instance until the text changes.
+     * Null if neither links nor processors are enabled.
+     * */
+    Spannable getSpannedText(IMessage message) {
+        return spannedTextCache.get(message);
+    }
+
+    private int getListWidth() {
+        return layoutManager != null ? layoutManager.getWidth() : 0;
+    }
+
+    /*
+     * Listener created once per holder. The message is resolved by adapter position at click time,
+     * so the same listener serves every message bound to the holder.
+     * */
+    private class HolderListener implements View.OnClickListener, View.OnLongClickListener {
+
+        private final MessageHolders.BaseMessageViewHolder holder;
+
+        HolderListener(MessageHolders.BaseMessageViewHolder holder) {
+            this.holder = holder;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void onClick(View view) {
+            int position = holder.getAdapterPosition();
+            if (holder.adapter != MessagesListAdapter.this
+                    || position == RecyclerView.NO_POSITION || store.isHeader(position)) return;
+            MESSAGE message = (MESSAGE) store.get(position);
+
+            if (view != holder.itemView) {
+                OnMessageViewClickListener<MESSAGE> listener = viewClickListenersArray.get(view.getId());
+                if (listener != null) {
+                    listener.onMessageViewClick(view, message);
+                }
+            } else if (selectionListener != null && isSelectionModeEnabled) {
+                setSelected(position, position, !store.isSelected(position));
+            } else {
+                notifyMessageClicked(message);
+                notifyMessageViewClicked(view, message);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public boolean onLongClick(View view) {
+            int position = holder.getAdapterPosition();
+            if (holder.adapter != MessagesListAdapter.this
+                    || position == RecyclerView.NO_POSITION || store.isHeader(position)) return false;
+
+            if (selectionListener == null) {
+                MESSAGE message = (MESSAGE) store.get(position);
+                notifyMessageLongClicked(message);
+                notifyMessageViewLongClicked(view, message);
+            } else {
+                isSelectionModeEnabled = true;
+                view.performClick();
+            }
+            return true;
+        }
     }
 
     /*
@@ -696,6 +1703,116 @@ public class MessagesListAdapter<MESSAGE extends IMessage>
         }
     }
 
+    /*
+     * Keeps the store and its index consistent when items are changed through the list.
+     * */
+    private class ItemsView extends AbstractList<Wrapper> implements RandomAccess {
+
+        @Override
+        public Wrapper get(int index) {
+            Wrapper<Object> wrapper = new Wrapper<>(store.get(index));
+            wrapper.isSelected = store.isSelected(index);
+            return wrapper;
+        }
+
+        @Override
+        public int size() {
+            return store.size();
+        }
+
+        @Override
+        public Wrapper set(int index, Wrapper element) {
+            Wrapper old = get(index);
+            store.set(index, element.item, dayKeyOf(element.item), viewTypeOf(element.item));
+            store.setSelected(index, element.isSelected);
+            return old;
+        }
+
+        @Override
+        public void add(int index, Wrapper element) {
+            store.add(index, element.item, dayKeyOf(element.item), viewTypeOf(element.item));
+            store.setSelected(index, element.isSelected);
+            modCount++;
+        }
+
+        @Override
+        public Wrapper remove(int index) {
+            Wrapper old = get(index);
+            store.remove(index);
+            modCount++;
+            return old;
+        }
+
+        @Override
+        protected void removeRange(int fromIndex, int toIndex) {
+            store.removeRange(fromIndex, toIndex);
+            modCount++;
+        }
+
+        @Override
+        public void clear() {
+            store.clear();
+            modCount++;
+        }
+    }
+
+    private static class ItemsDiffCallback<MESSAGE extends IMessage> extends DiffUtil.Callback {
+
+        private Object[] oldItems;
+        private List<Object> newItems;
+        private DiffCallback<MESSAGE> diffCallback;
+
+        ItemsDiffCallback(Object[] oldItems, List<Object> newItems, DiffCallback<MESSAGE> diffCallback) {
+            this.oldItems = oldItems;
+            this.newItems = newItems;
+            this.diffCallback = diffCallback;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldItems.length;
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newItems.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            Object oldItem = oldItems[oldItemPosition];
+            Object newItem = newItems.get(newItemPosition);
+            if (oldItem instanceof IMessage && newItem instanceof IMessage) {
+                return ((IMessage) oldItem).getId().equals(((IMessage) newItem).getId());
+            } else if (oldItem instanceof Date && newItem instanceof Date) {
+                return DateFormatter.isSameDay((Date) oldItem, (Date) newItem);
+            }
+            return false;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            Object oldItem = oldItems[oldItemPosition];
+            Object newItem = newItems.get(newItemPosition);
+            if (oldItem == newItem) return true;
+            if (diffCallback != null && oldItem instanceof IMessage) {
+                return diffCallback.areContentsTheSame((MESSAGE) oldItem, (MESSAGE) newItem);
+            }
+            return oldItem.equals(newItem);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public Object getChangePayload(int oldItemPosition, int newItemPosition) {
+            Object oldItem = oldItems[oldItemPosition];
+            if (diffCallback != null && oldItem instanceof IMessage) {
+                return diffCallback.getChangePayload((MESSAGE) oldItem, (MESSAGE) newItems.get(newItemPosition));
+            }
+            return null;
+        }
+    }
+
     /*
      * LISTENERS
      * */
@@ -714,6 +1831,22 @@ public class MessagesListAdapter<MESSAGE extends IMessage>
         void onLoadMore(int page, int totalItemsCount);
     }
 
+    /**
+     * Interface definition for a callback to be invoked when state of loading from {@link MessagesDataSource} is changed.
+     */
+    public interface OnLoadStateChangedListener {
+
+        /**
+         * Fires when state of loading in some direction is changed.
+         *
+         * @param direction direction of loading.
+         * @param state     new state.
+         * @param error     cause of {@link MessagesDataSource.LoadState#ERROR} state or {@code null}.
+         */
+        void onLoadStateChanged(MessagesDataSource.Direction direction, MessagesDataSource.LoadState state,
+                                @Nullable Throwable error);
+    }
+
     /**
      * Interface definition for a callback to be invoked when selected messages count is changed.
      */
@@ -779,6 +1912,46 @@ public class MessagesListAdapter<MESSAGE extends IMessage>
         void onMessageViewLongClick(View view, MESSAGE message);
     }
 
+    /**
+     * Interface definition for a callback adding spans to message text. It's called on background thread
+     * and its result is cached, so it must depend only on the message.
+     */
+    public interface SpanProcessor<MESSAGE extends IMessage> {
+
+        /**
+         * Adds spans to the message text.
+         *
+         * @param message message.
+         * @param text    message text with spans of links, if they are enabled.
+         */
+        void process(MESSAGE message, Spannable text);
+    }
+
+    /**
+     * Interface definition for a callback used by {@link #submitMessages(List, boolean)}
+     * to compare messages which have the same id.
+     */
+    public interface DiffCallback<MESSAGE extends IMessage> {
+
+        /**
+         * Checks whether the message has changed, so its item needs to be rebound.
+         *
+         * @param oldMessage message from the current list.
+         * @param newMessage message with the same id from the submitted list.
+         * @return {@code true} if the item looks the same.
+         */
+        boolean areContentsTheSame(MESSAGE oldMessage, MESSAGE newMessage);
+
+        /**
+         * Returns the payload describing the change, which is passed to {@code notifyItemChanged}.
+         *
+         * @param oldMessage message from the current list.
+         * @param newMessage message with the same id from the submitted list.
+         * @return payload or {@code null} to rebind the whole item.
+         */
+        Object getChangePayload(MESSAGE oldMessage, MESSAGE newMessage);
+    }
+
     /**
      * Interface used to format your message model when copying.
      */
@@ -900,15 +2073,6 @@ public class MessagesListAdapter<MESSAGE extends IMessage>
             return isSelected;
         }
 
-        /**
-         * Returns weather is selection mode enabled
-         *
-         * @return weather is selection mode enabled.
-         */
-        public boolean isSelectionModeEnabled() {
-            return isSelectionModeEnabled;
-        }
-
         /**
          * Getter for {@link #imageLoader}
          *
@@ -924,7 +2088,7 @@ public class MessagesListAdapter<MESSAGE extends IMessage>
                 @Override
                 public boolean onTouchEvent(TextView widget, Spannable buffer, MotionEvent event) {
                     boolean result = false;
-                    if (!isSelectionModeEnabled) {
+                    if (!isSelectionModeEnabled()) {
                         result = super.onTouchEvent(widget, buffer, event);
                     }
                     itemView.onTouchEvent(event);
@@ -0,0 +1,382 @@
+/*******************************************************************************
+ * Copyright 2016 stfalcon.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.stfalcon.chatkit.messages;
+
+import com.stfalcon.chatkit.commons.models.IMessage;
+import com.stfalcon.chatkit.messages.MessagesDataSource.Direction;
+import com.stfalcon.chatkit.messages.MessagesDataSource.LoadState;
+import com.stfalcon.chatkit.utils.TaskExecutors;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads pages of {@link MessagesDataSource} when the visible range of {@link MessagesListAdapter} comes
+ * closer than prefetch distance to one of its ends. Each direction has at most one load in flight,
+ * results are dropped if the adapter was reset while loading. Without data source the legacy
+ * {@link MessagesListAdapter.OnLoadMoreListener} is notified instead.
+ * <p>
+ * If max count of loaded messages is set, messages on the side farther from the visible range are evicted
+ * after each load, and this direction is loaded again when the list is scrolled back.
+ * <p>
+ * While the newest messages aren't loaded, live messages can't be added on top of the list: the next
+ * page would be requested after them and the range between would never be loaded. They are kept
+ * here and added when newer pages reach the end. All methods are called on the main thread.
+ */
+final class MessagesPager<MESSAGE extends IMessage> {
+
+    static final int DEFAULT_PAGE_SIZE = 30;
+    static final int DEFAULT_PREFETCH_DISTANCE = 5;
+
+    private final MessagesListAdapter<MESSAGE> adapter;
+    private MessagesDataSource<MESSAGE> dataSource;
+    private int pageSize = DEFAULT_PAGE_SIZE;
+    private int prefetchDistance = DEFAULT_PREFETCH_DISTANCE;
+    private int maxMessages;
+
+    private final Load initial = new Load(Direction.INITIAL);
+    private final Load around = new Load(Direction.AROUND);
+    private final Load older = new Load(Direction.OLDER);
+    private final Load newer = new Load(Direction.NEWER);
+    private int generation;
+    private String anchorId;
+    private final List<MESSAGE> deferredNewest = new ArrayList<>();
+
+    private int firstVisible = -1;
+    private int lastVisible = -1;
+
+    private int legacyPage;
+    private int legacyItemCount;
+    private boolean isLegacyLoading = true;
+
+    MessagesPager(MessagesListAdapter<MESSAGE> adapter) {
+        this.adapter = adapter;
+    }
+
+    void setDataSource(MessagesDataSource<MESSAGE> dataSource, int pageSize) {
+        this.dataSource = dataSource;
+        this.pageSize = pageSize;
+        reset();
+        if (dataSource != null) {
+            start(initial, null);
+        }
+    }
+
+    /*
+     * Replaces loaded messages with the page around the anchor, then pages are loaded
+     * in both directions from it. Returns false if there is no data source.
+     * */
+    boolean loadAround(String id) {
+        if (dataSource == null) return false;
+        generation++;
+        anchorId = id;
+        initial.setState(LoadState.IDLE, null);
+        older.setState(LoadState.IDLE, null);
+        newer.setState(LoadState.IDLE, null);
+        start(around, id);
+        return true;
+    }
+
+    void setPrefetchDistance(int prefetchDistance) {
+        this.prefetchDistance = prefetchDistance;
+        check();
+    }
+
+    void setMaxMessages(int maxMessages) {
+        this.maxMessages = maxMessages;
+        trim();
+    }
+
+    LoadState getState(Direction direction) {
+        return loadOf(direction).state;
+    }
+
+    /*
+     * Returns true if messages newer than the loaded ones can be added to the list.
+     * */
+    boolean isAtNewest() {
+        return dataSource == null || newer.state == LoadState.END
+                && isSettled(initial) && isSettled(around);
+    }
+
+    /*
+     * Returns true if messages older than the loaded ones can be added to the list.
+     * */
+    boolean isAtOldest() {
+        return dataSource == null || older.state == LoadState.END;
+    }
+
+    /*
+     * Keeps live messages until the newest page is loaded. Returns false if they can be added now.
+     * */
+    boolean deferNewest(List<MESSAGE> messages) {
+        if (isAtNewest()) return false;
+        deferredNewest.addAll(messages);
+        return true;
+    }
+
+    /*
+     * Drops loads in flight, e.g. when the adapter is cleared. Newer messages are expected
+     * to be added by the app until something is loaded from the middle of history.
+     * */
+    void reset() {
+        generation++;
+        anchorId = null;
+        deferredNewest.clear();
+        initial.setState(LoadState.IDLE, null);
+        around.setState(LoadState.IDLE, null);
+        older.setState(LoadState.IDLE, null);
+        newer.setState(LoadState.END, null);
+        legacyPage = 0;
+        legacyItemCount = 0;
+        isLegacyLoading = true;
+    }
+
+    void refresh() {
+        if (dataSource == null) return;
+        // live messages are inserted into the newest page when it's loaded
+        List<MESSAGE> deferred = new ArrayList<>(deferredNewest);
+        reset();
+        deferredNewest.addAll(deferred);
+        start(initial, null);
+    }
+
+    void retry() {
+        if (initial.state == LoadState.ERROR) {
+            start(initial, null);
+        }
+        if (around.state == LoadState.ERROR) {
+            start(around, anchorId);
+        }
+        if (older.state == LoadState.ERROR) {
+            older.setState(LoadState.IDLE, null);
+        }
+        if (newer.state == LoadState.ERROR) {
+            newer.setState(LoadState.IDLE, null);
+        }
+        check();
+    }
+
+    void onVisibleRangeChanged(int firstVisible, int lastVisible) {
+        this.firstVisible = firstVisible;
+        this.lastVisible = lastVisible;
+        if (dataSource != null) {
+            check();
+        } else {
+            checkLegacy();
+        }
+    }
+
+    /*
+     * Legacy listener has no way to report failed or empty load, so a new drag lets it ask again.
+     * */
+    void onUserScrollStarted() {
+        if (dataSource == null && adapter.getItemCount() > 0) {
+            isLegacyLoading = false;
+        }
+    }
+
+    private void check() {
+        if (dataSource == null || firstVisible < 0
+                || initial.state == LoadState.LOADING || around.state == LoadState.LOADING) return;
+        int count = adapter.getItemCount();
+        if (count == 0) return;
+
+        if (older.state == LoadState.IDLE && lastVisible + prefetchDistance >= count - 1) {
+            start(older, adapter.getOldestMessageId());
+        }
+        if (newer.state == LoadState.IDLE && firstVisible - prefetchDistance <= 0) {
+            start(newer, adapter.getNewestMessageId());
+        }
+    }
+
+    private void checkLegacy() {
+        int count = adapter.getItemCount();
+        if (count != legacyItemCount) {
+            if (count < legacyItemCount) legacyPage = 0;
+            isLegacyLoading = count == 0;
+            legacyItemCount = count;
+        }
+        if (!isLegacyLoading && lastVisible + prefetchDistance >= count - 1) {
+            isLegacyLoading = true;
+            adapter.onLoadMore(++legacyPage, adapter.getMessagesCount());
+        }
+    }
+
+    private void start(final Load load, final String key) {
+        if (load != initial && key == null) return;
+        load.setState(LoadState.LOADING, null);
+
+        final MessagesDataSource<MESSAGE> source = dataSource;
+        final int count = pageSize;
+        final int loadGeneration = generation;
+        TaskExecutors.background().execute(new Runnable() {
+            @Override
+            public void run() {
+                List<MESSAGE> result = null;
+                Exception error = null;
+                try {
+                    result = load(source, load.direction, key, count);
+                } catch (Exception e) {
+                    error = e;
+                }
+                final List<MESSAGE> messages = result;
+                final Exception loadError = error;
+                TaskExecutors.postToMainThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (loadGeneration != generation || source != dataSource) return;
+                        onLoadFinished(load, key, messages, loadError);
+                    }
+                });
+            }
+        });
+    }
+
+    private List<MESSAGE> load(MessagesDataSource<MESSAGE> source, Direction direction,
+                               String key, int count) throws Exception {
+        switch (direction) {
+            case OLDER:
+                return source.loadOlder(key, count);
+            case NEWER:
+                return source.loadNewer(key, count);
+            case AROUND:
+                return source.loadAround(key, count);
+            default:
+                return source.loadInitial(count);
+        }
+    }
+
+    private void onLoadFinished(Load load, String key, List<MESSAGE> messages, Exception error) {
+        if (error != null || messages == null) {
+            load.setState(LoadState.ERROR, error);
+            return;
+        }
+
+        switch (load.direction) {
+            case INITIAL:
+                adapter.setPage(messages);
+                // visible range is unknown until the new page is laid out
+                firstVisible = lastVisible = -1;
+                break;
+            case AROUND:
+                adapter.setPage(messages);
+                adapter.scrollToLoadedMessage(anchorId);
+                firstVisible = lastVisible = -1;
+                break;
+            case OLDER:
+                // the edge could change while loading, then the page doesn't fit and is requested again
+                if (!key.equals(adapter.getOldestMessageId())) {
+                    load.setState(LoadState.IDLE, null);
+                    check();
+                    return;
+                }
+                adapter.appendPage(messages);
+                break;
+            case NEWER:
+                if (!key.equals(adapter.getNewestMessageId())) {
+                    load.setState(LoadState.IDLE, null);
+                    check();
+                    return;
+                }
+                adapter.prependPage(messages);
+                break;
+        }
+        load.setState(messages.isEmpty() ? LoadState.END : LoadState.IDLE, null);
+        if (load == initial && messages.isEmpty()) {
+            older.setState(LoadState.END, null);
+        }
+        trim();
+        if (!deferredNewest.isEmpty() && isAtNewest()) {
+            List<MESSAGE> deferred = new ArrayList<>(deferredNewest);
+            deferredNewest.clear();
+            adapter.insertAll(deferred);
+        }
+        check();
+    }
+
+    /*
+     * Evicts messages from the end which is farther from the visible range. Evicted part stops
+     * a bit farther than prefetch distance, so it isn't requested again until the list is scrolled to it.
+     * */
+    private void trim() {
+        if (dataSource == null || maxMessages <= 0 || firstVisible < 0) return;
+        int excess = adapter.getMessagesCount() - maxMessages;
+        if (excess <= 0) return;
+
+        int count = adapter.getItemCount();
+        int guard = prefetchDistance + 2;
+        // side with load in flight isn't evicted, the load result must fit to its edge
+        if (count - 1 - lastVisible >= firstVisible) {
+            if (older.state == LoadState.LOADING) return;
+            int cut = count;
+            while (excess > 0 && cut - 1 > lastVisible + guard) {
+                cut--;
+                if (!adapter.isDateHeader(cut)) excess--;
+            }
+            if (cut == count) return;
+            adapter.evict(cut, count);
+            older.setState(LoadState.IDLE, null);
+        } else {
+            if (newer.state == LoadState.LOADING) return;
+            int cut = 0;
+            while (excess > 0 && cut < firstVisible - guard) {
+                if (!adapter.isDateHeader(cut)) excess--;
+                cut++;
+            }
+            if (cut == 0) return;
+            adapter.evict(0, cut);
+            int removed = count - adapter.getItemCount();
+            firstVisible -= removed;
+            lastVisible -= removed;
+            newer.setState(LoadState.IDLE, null);
+        }
+    }
+
+    private boolean isSettled(Load load) {
+        return load.state != LoadState.LOADING && load.state != LoadState.ERROR;
+    }
+
+    private Load loadOf(Direction direction) {
+        switch (direction) {
+            case OLDER:
+                return older;
+            case NEWER:
+                return newer;
+            case AROUND:
+                return around;
+            default:
+                return initial;
+        }
+    }
+
+    private class Load {
+
+        private final Direction direction;
+        private LoadState state = LoadState.IDLE;
+
+        Load(Direction direction) {
+            this.direction = direction;
+        }
+
+        void setState(LoadState state, Throwable error) {
+            if (this.state == state && error == null) return;
+            this.state = state;
+            adapter.onLoadStateChanged(direction, state, error);
+        }
+    }
+}
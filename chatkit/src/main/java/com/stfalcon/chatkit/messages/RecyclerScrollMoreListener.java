@@ -16,19 +16,17 @@
 
 package com.stfalcon.chatkit.messages;
 
-import android.support.v7.widget.GridLayoutManager;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.support.v7.widget.StaggeredGridLayoutManager;
 
+/*
+ * Reports visible range of the list, paging itself is done by MessagesPager.
+ * */
 class RecyclerScrollMoreListener
         extends RecyclerView.OnScrollListener {
 
     private OnLoadMoreListener loadMoreListener;
-    private int currentPage = 0;
-    private int previousTotalItemCount = 0;
-    private boolean loading = true;
-
     private RecyclerView.LayoutManager mLayoutManager;
 
     RecyclerScrollMoreListener(LinearLayoutManager layoutManager, OnLoadMoreListener loadMoreListener) {
@@ -48,46 +46,47 @@ class RecyclerScrollMoreListener
         return maxSize;
     }
 
+    private int getFirstVisibleItem(int[] firstVisibleItemPositions) {
+        int minSize = 0;
+        for (int i = 0; i < firstVisibleItemPositions.length; i++) {
+            if (i == 0) {
+                minSize = firstVisibleItemPositions[i];
+            } else if (firstVisibleItemPositions[i] < minSize) {
+                minSize = firstVisibleItemPositions[i];
+            }
+        }
+        return minSize;
+    }
+
     @Override
     public void onScrolled(RecyclerView view, int dx, int dy) {
         if (loadMoreListener != null) {
+            int firstVisibleItemPosition = 0;
             int lastVisibleItemPosition = 0;
-            int totalItemCount = mLayoutManager.getItemCount();
 
             if (mLayoutManager instanceof StaggeredGridLayoutManager) {
-                int[] lastVisibleItemPositions = ((StaggeredGridLayoutManager) mLayoutManager).findLastVisibleItemPositions(null);
-                lastVisibleItemPosition = getLastVisibleItem(lastVisibleItemPositions);
+                StaggeredGridLayoutManager layoutManager = (StaggeredGridLayoutManager) mLayoutManager;
+                firstVisibleItemPosition = getFirstVisibleItem(layoutManager.findFirstVisibleItemPositions(null));
+                lastVisibleItemPosition = getLastVisibleItem(layoutManager.findLastVisibleItemPositions(null));
             } else if (mLayoutManager instanceof LinearLayoutManager) {
+                firstVisibleItemPosition = ((LinearLayoutManager) mLayoutManager).findFirstVisibleItemPosition();
                 lastVisibleItemPosition = ((LinearLayoutManager) mLayoutManager).findLastVisibleItemPosition();
-            } else if (mLayoutManager instanceof GridLayoutManager) {
-                lastVisibleItemPosition = ((GridLayoutManager) mLayoutManager).findLastVisibleItemPosition();
             }
 
-            if (totalItemCount < previousTotalItemCount) {
-                this.currentPage = 0;
-                this.previousTotalItemCount = totalItemCount;
-                if (totalItemCount == 0) {
-                    this.loading = true;
-                }
-            }
-
-            if (loading && (totalItemCount > previousTotalItemCount)) {
-                loading = false;
-                previousTotalItemCount = totalItemCount;
-            }
+            loadMoreListener.onVisibleRangeChanged(firstVisibleItemPosition, lastVisibleItemPosition);
+        }
+    }
 
-            int visibleThreshold = 5;
-            if (!loading && (lastVisibleItemPosition + visibleThreshold) > totalItemCount) {
-                currentPage++;
-                loadMoreListener.onLoadMore(loadMoreListener.getMessagesCount(), totalItemCount);
-                loading = true;
-            }
+    @Override
+    public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+        if (loadMoreListener != null && newState == RecyclerView.SCROLL_STATE_DRAGGING) {
+            loadMoreListener.onUserScrollStarted();
         }
     }
 
     interface OnLoadMoreListener {
-        void onLoadMore(int page, int total);
+        void onVisibleRangeChanged(int firstVisible, int lastVisible);
 
-        int getMessagesCount();
+        void onUserScrollStarted();
     }
 }
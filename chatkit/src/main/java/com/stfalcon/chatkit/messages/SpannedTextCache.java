@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Copyright 2016 stfalcon.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.stfalcon.chatkit.messages;
+
+import android.text.Spannable;
+import android.text.SpannableString;
+import android.text.util.Linkify;
+import android.util.LruCache;
+
+import com.stfalcon.chatkit.commons.models.IMessage;
+import com.stfalcon.chatkit.utils.TaskExecutors;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Texts of messages with link spans and spans of {@link MessagesListAdapter.SpanProcessor}s, keyed by message id.
+ * Text is processed once: in background when message is added, or on the first bind if it wasn't ready yet.
+ * Entry is valid while the message text is the same.
+ */
+final class SpannedTextCache {
+
+    private final LruCache<String, Entry> entries;
+    private final List<MessagesListAdapter.SpanProcessor> processors = new ArrayList<>();
+    private int autoLinkMask;
+    private int version;
+
+    SpannedTextCache(int maxSize) {
+        entries = new LruCache<>(maxSize);
+    }
+
+    /*
+     * Returns true if there is something to process, otherwise texts are shown as they are.
+     * */
+    boolean isEnabled() {
+        return autoLinkMask != 0 || !processors.isEmpty();
+    }
+
+    void setAutoLinkMask(int autoLinkMask) {
+        if (this.autoLinkMask != autoLinkMask) {
+            this.autoLinkMask = autoLinkMask;
+            invalidate();
+        }
+    }
+
+    void addProcessor(MessagesListAdapter.SpanProcessor processor) {
+        processors.add(processor);
+        invalidate();
+    }
+
+    void removeProcessor(MessagesListAdapter.SpanProcessor processor) {
+        if (processors.remove(processor)) {
+            invalidate();
+        }
+    }
+
+    /*
+     * Called on the main thread while binding. Returns null if there is nothing to process.
+     * */
+    Spannable get(IMessage message) {
+        String text = message.getText();
+        if (text == null || !isEnabled()) return null;
+
+        Entry entry = entries.get(message.getId());
+        if (entry != null && entry.matches(text)) {
+            return entry.spanned;
+        }
+        Spannable spanned = process(message, text, autoLinkMask,
+                processors.toArray(new MessagesListAdapter.SpanProcessor[processors.size()]));
+        entries.put(message.getId(), new Entry(text, spanned));
+        return spanned;
+    }
+
+    void precompute(IMessage message) {
+        precompute(new IMessage[]{message});
+    }
+
+    void precompute(List<? extends IMessage> messages) {
+        precompute(messages.toArray(new IMessage[messages.size()]));
+    }
+
+    private void precompute(final IMessage[] messages) {
+        if (!isEnabled()) return;
+        final int mask = autoLinkMask;
+        final MessagesListAdapter.SpanProcessor[] processors =
+                this.processors.toArray(new MessagesListAdapter.SpanProcessor[this.processors.size()]);
+        final int version = this.version;
+
+        TaskExecutors.background().execute(new Runnable() {
+            @Override
+            public void run() {
+                for (IMessage message : messages) {
+                    String text = message.getText();
+                    if (text == null) continue;
+                    Entry entry = entries.get(message.getId());
+                    if (entry != null && entry.matches(text)) continue;
+
+                    Spannable spanned = process(message, text, mask, processors);
+                    synchronized (SpannedTextCache.this) {
+                        // links style or processors were changed while processing
+                        if (version != SpannedTextCache.this.version) return;
+                        entries.put(message.getId(), new Entry(text, spanned));
+                    }
+                }
+            }
+        });
+    }
+
+    private synchronized void invalidate() {
+        version++;
+        entries.evictAll();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Spannable process(IMessage message, String text, int autoLinkMask,
+                                     MessagesListAdapter.SpanProcessor[] processors) {
+        Spannable spanned = new SpannableString(text);
+        if (autoLinkMask != 0) {
+            Linkify.addLinks(spanned, autoLinkMask);
+        }
+        for (MessagesListAdapter.SpanProcessor processor : processors) {
+            processor.process(message, spanned);
+        }
+        return spanned;
+    }
+
+    private static class Entry {
+
+        private final String text;
+        private final int textHash;
+        private final Spannable spanned;
+
+        Entry(String text, Spannable spanned) {
+            this.text = text;
+            this.textHash = text.hashCode();
+            this.spanned = spanned;
+        }
+
+        boolean matches(String text) {
+            return textHash == text.hashCode() && this.text.equals(text);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright 2016 stfalcon.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.stfalcon.chatkit.messages;
+
+import android.content.res.Resources;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.util.LruCache;
+
+import com.stfalcon.chatkit.commons.models.IMessage;
+import com.stfalcon.chatkit.utils.TaskExecutors;
+
+import java.util.List;
+
+/**
+ * Text layouts of messages built in background, keyed by message id, text and width.
+ * Layouts are built for plain text with paints and widths of the default bubbles, default holders
+ * don't use them, they are available to custom holders which draw text themselves.
+ */
+final class TextLayoutCache {
+
+    private final LruCache<String, StaticLayout> layouts;
+    private TextPaint incomingPaint;
+    private TextPaint outcomingPaint;
+    private int incomingWidth;
+    private int outcomingWidth;
+
+    TextLayoutCache(int maxSize) {
+        layouts = new LruCache<>(maxSize);
+        setStyle(null, 0);
+    }
+
+    /*
+     * Paints and widths follow the default bubbles: text size and style from MessagesListStyle,
+     * list width without bubble paddings (and avatar for incoming messages). Bubble max width and
+     * spans aren't taken into account, so holders using these layouts should measure text the same way.
+     * */
+    void setStyle(MessagesListStyle style, int listWidth) {
+        if (listWidth <= 0) {
+            listWidth = Resources.getSystem().getDisplayMetrics().widthPixels;
+        }
+        incomingPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+        outcomingPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+        incomingWidth = listWidth;
+        outcomingWidth = listWidth;
+        if (style != null) {
+            incomingPaint.setTextSize(style.getIncomingTextSize());
+            incomingPaint.setTypeface(Typeface.defaultFromStyle(style.getIncomingTextStyle()));
+            outcomingPaint.setTextSize(style.getOutcomingTextSize());
+            outcomingPaint.setTypeface(Typeface.defaultFromStyle(style.getOutcomingTextStyle()));
+            incomingWidth -= style.getIncomingAvatarWidth()
+                    + style.getIncomingDefaultBubblePaddingLeft() + style.getIncomingDefaultBubblePaddingRight();
+            outcomingWidth -= style.getOutcomingDefaultBubblePaddingLeft() + style.getOutcomingDefaultBubblePaddingRight();
+        }
+        incomingWidth = Math.max(incomingWidth, 1);
+        outcomingWidth = Math.max(outcomingWidth, 1);
+        layouts.evictAll();
+    }
+
+    Layout get(IMessage message, boolean isOutcoming) {
+        String text = message.getText();
+        if (text == null) return null;
+        return layouts.get(keyOf(message.getId(), text, isOutcoming));
+    }
+
+    void precompute(IMessage message, String senderId) {
+        precompute(new IMessage[]{message}, senderId);
+    }
+
+    void precompute(List<? extends IMessage> messages, String senderId) {
+        precompute(messages.toArray(new IMessage[messages.size()]), senderId);
+    }
+
+    void clear() {
+        layouts.evictAll();
+    }
+
+    private void precompute(IMessage[] messages, String senderId) {
+        // everything read from messages and style is captured on the calling thread
+        final int count = messages.length;
+        final String[] keys = new String[count];
+        final String[] texts = new String[count];
+        final boolean[] outcoming = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            IMessage message = messages[i];
+            String text = message.getText();
+            if (text == null || text.isEmpty()) continue;
+            boolean isOutcoming = message.getUser().getId().contentEquals(senderId);
+            texts[i] = text;
+            outcoming[i] = isOutcoming;
+            keys[i] = keyOf(message.getId(), text, isOutcoming);
+        }
+        // paints aren't thread safe, so each task measures with its own copies
+        final TextPaint incomingCopy = new TextPaint(incomingPaint);
+        final TextPaint outcomingCopy = new TextPaint(outcomingPaint);
+        final int incomingWidth = this.incomingWidth;
+        final int outcomingWidth = this.outcomingWidth;
+
+        TaskExecutors.background().execute(new Runnable() {
+            @SuppressWarnings("deprecation")
+            @Override
+            public void run() {
+                for (int i = 0; i < count; i++) {
+                    if (keys[i] == null || layouts.get(keys[i]) != null) continue;
+                    StaticLayout layout = new StaticLayout(texts[i],
+                            outcoming[i] ? outcomingCopy : incomingCopy,
+                            outcoming[i] ? outcomingWidth : incomingWidth,
+                            Layout.Alignment.ALIGN_NORMAL, 1f, 0f, true);
+                    layouts.put(keys[i], layout);
+                }
+            }
+        });
+    }
+
+    private String keyOf(String id, String text, boolean isOutcoming) {
+        return id + '\u0000' + text.hashCode() + '\u0000'
+                + (isOutcoming ? "o" + outcomingWidth : "i" + incomingWidth);
+    }
+}
@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright 2016 stfalcon.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.stfalcon.chatkit.utils;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+
+/**
+ * Drops caches of {@link DateFormatter} when system time settings change.
+ * Registered while at least one list is attached to window.
+ */
+public final class DateChangesReceiver extends BroadcastReceiver {
+
+    private static DateChangesReceiver instance;
+    private static int registrations;
+
+    private DateChangesReceiver() {
+    }
+
+    public static synchronized void register(Context context) {
+        // changes which happened while nothing was registered weren't received
+        DateFormatter.checkTimeZone();
+        if (registrations++ == 0) {
+            instance = new DateChangesReceiver();
+            IntentFilter filter = new IntentFilter();
+            filter.addAction(Intent.ACTION_TIMEZONE_CHANGED);
+            filter.addAction(Intent.ACTION_LOCALE_CHANGED);
+            filter.addAction(Intent.ACTION_TIME_CHANGED);
+            context.getApplicationContext().registerReceiver(instance, filter);
+        }
+    }
+
+    public static synchronized void unregister(Context context) {
+        if (registrations > 0 && --registrations == 0) {
+            context.getApplicationContext().unregisterReceiver(instance);
+            instance = null;
+        }
+    }
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (Intent.ACTION_TIMEZONE_CHANGED.equals(intent.getAction())) {
+            DateFormatter.onTimeZoneChanged();
+        } else if (Intent.ACTION_LOCALE_CHANGED.equals(intent.getAction())) {
+            DateFormatter.onLocaleChanged();
+        } else if (Intent.ACTION_TIME_CHANGED.equals(intent.getAction())) {
+            DateFormatter.onTimeFormatChanged();
+        }
+    }
+}
@@ -19,9 +19,48 @@ package com.stfalcon.chatkit.utils;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
 
 public final class DateFormatter {
+
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+    private static final long MINUTE_MILLIS = 60 * 1000L;
+    private static final int MAX_CACHED_FORMATS = 8;
+    private static final int MAX_CACHED_STRINGS = 256;
+    private static final int MAX_CACHED_PATTERNS = 1 << 10;
+
+    private static final int UNCACHED = 0;
+    private static final int MINUTES = 1;
+    private static final int DAYS = 2;
+    private static final int[] UNCACHED_PATTERN = {0, UNCACHED};
+
+    private static volatile TimeZone timeZone;
+    private static volatile int timeZoneVersion;
+    private static volatile int formatsVersion;
+
+    /*
+     * SimpleDateFormat isn't thread safe, so every thread keeps its own formats.
+     * */
+    private static final ThreadLocal<FormatsCache> formats = new ThreadLocal<FormatsCache>() {
+        @Override
+        protected FormatsCache initialValue() {
+            return new FormatsCache();
+        }
+    };
+
+    /*
+     * Formatted strings are shared by all threads. Key is the epoch minute or day of the date
+     * (depending on the smallest field of the pattern) combined with id of the pattern.
+     * */
+    private static final FormattedDatesCache strings = new FormattedDatesCache(MAX_CACHED_STRINGS);
+    private static final HashMap<String, int[]> patterns = new HashMap<>();
+    private static Locale stringsLocale;
+    private static int stringsVersion;
+
     private DateFormatter() {
         throw new AssertionError();
     }
@@ -30,21 +69,53 @@ public final class DateFormatter {
         return format(date, template.get());
     }
 
+    /**
+     * Formats date with the pattern in default locale and time zone. Compiled formats are cached
+     * per thread, so it can be called from any thread.
+     *
+     * @param date   date to format.
+     * @param format pattern of {@link SimpleDateFormat}.
+     * @return formatted date or empty string if date is null.
+     */
     public static String format(Date date, String format) {
         if (date == null) return "";
-        return new SimpleDateFormat(format, Locale.getDefault())
-                .format(date);
+        Locale locale = Locale.getDefault();
+        int version = formatsVersion;
+        long key = 0;
+        boolean isCached;
+        synchronized (strings) {
+            if (version != stringsVersion || !locale.equals(stringsLocale)) {
+                strings.clear();
+                stringsLocale = locale;
+                stringsVersion = version;
+            }
+            int[] pattern = patternOf(format);
+            isCached = pattern[1] != UNCACHED;
+            if (isCached) {
+                long millis = date.getTime();
+                long unit = pattern[1] == MINUTES ? toEpochMinute(millis) : toEpochDay(millis);
+                key = unit * MAX_CACHED_PATTERNS + pattern[0];
+                String result = strings.get(key);
+                if (result != null) return result;
+            }
+        }
+
+        String result = formats.get().get(format, locale, version).format(date);
+        if (isCached) {
+            synchronized (strings) {
+                if (version == stringsVersion && locale.equals(stringsLocale)) {
+                    strings.put(key, result);
+                }
+            }
+        }
+        return result;
     }
 
     public static boolean isSameDay(Date date1, Date date2) {
         if (date1 == null || date2 == null) {
             throw new IllegalArgumentException("Dates must not be null");
         }
-        Calendar cal1 = Calendar.getInstance();
-        cal1.setTime(date1);
-        Calendar cal2 = Calendar.getInstance();
-        cal2.setTime(date2);
-        return isSameDay(cal1, cal2);
+        return toEpochDay(date1.getTime()) == toEpochDay(date2.getTime());
     }
 
     public static boolean isSameDay(Calendar cal1, Calendar cal2) {
@@ -80,7 +151,10 @@ public final class DateFormatter {
     }
 
     public static boolean isToday(Date date) {
-        return isSameDay(date, Calendar.getInstance().getTime());
+        if (date == null) {
+            throw new IllegalArgumentException("The date must not be null");
+        }
+        return DayClock.isToday(date.getTime());
     }
 
     public static boolean isYesterday(Calendar calendar) {
@@ -90,19 +164,166 @@ public final class DateFormatter {
     }
 
     public static boolean isYesterday(Date date) {
-        Calendar yesterday = Calendar.getInstance();
-        yesterday.add(Calendar.DAY_OF_MONTH, -1);
-        return isSameDay(date, yesterday.getTime());
+        if (date == null) {
+            throw new IllegalArgumentException("The date must not be null");
+        }
+        return DayClock.isYesterday(date.getTime());
     }
 
     public static boolean isCurrentYear(Date date) {
-        return isSameYear(date, Calendar.getInstance().getTime());
+        if (date == null) {
+            throw new IllegalArgumentException("The date must not be null");
+        }
+        return DayClock.isCurrentYear(date.getTime());
     }
 
     public static boolean isCurrentYear(Calendar calendar) {
         return isSameYear(calendar, Calendar.getInstance());
     }
 
+    /**
+     * Returns the number of days since epoch for the date in default time zone.
+     * Dates of the same day have equal keys, so they can be compared without creating Calendars.
+     *
+     * @param date date.
+     * @return epoch day.
+     */
+    public static int toEpochDay(Date date) {
+        return toEpochDay(date.getTime());
+    }
+
+    /**
+     * Returns the number of days since epoch for the time in default time zone.
+     *
+     * @param millis time in milliseconds since epoch.
+     * @return epoch day.
+     */
+    public static int toEpochDay(long millis) {
+        TimeZone zone = getTimeZone();
+        long localMillis = millis + zone.getOffset(millis);
+        return (int) (localMillis >= 0
+                ? localMillis / DAY_MILLIS
+                : (localMillis - DAY_MILLIS + 1) / DAY_MILLIS);
+    }
+
+    /**
+     * Returns the version of time zone used for epoch days. It changes with every
+     * {@link #onTimeZoneChanged()} call, so keys calculated before are no longer valid.
+     */
+    public static int getTimeZoneVersion() {
+        return timeZoneVersion;
+    }
+
+    /**
+     * Drops cached time zone. Called automatically when the system time zone is changed
+     * while {@link com.stfalcon.chatkit.messages.MessagesList} or {@link com.stfalcon.chatkit.dialogs.DialogsList}
+     * is attached to window, and when a list is attached after a change.
+     * Call it yourself if you change default time zone with {@link TimeZone#setDefault(TimeZone)}.
+     */
+    public static void onTimeZoneChanged() {
+        timeZone = null;
+        timeZoneVersion++;
+        formatsVersion++;
+    }
+
+    /**
+     * Drops cached formats. Called automatically when the system locale is changed
+     * while a list is attached to window, a change of the default locale is also noticed on the next format.
+     */
+    public static void onLocaleChanged() {
+        formatsVersion++;
+    }
+
+    /**
+     * Drops cached formatted dates. Called automatically when the system time or its 12/24-hour
+     * setting is changed while a list is attached to window.
+     */
+    public static void onTimeFormatChanged() {
+        formatsVersion++;
+    }
+
+    private static long toEpochMinute(long millis) {
+        long localMillis = millis + getTimeZone().getOffset(millis);
+        return localMillis >= 0
+                ? localMillis / MINUTE_MILLIS
+                : (localMillis - MINUTE_MILLIS + 1) / MINUTE_MILLIS;
+    }
+
+    /*
+     * Returns id of the pattern and the largest unit within which all dates are formatted equally.
+     * Every letter is treated as a field, so quoted text can only make the unit smaller.
+     * */
+    private static int[] patternOf(String format) {
+        int[] pattern = patterns.get(format);
+        if (pattern == null) {
+            if (patterns.size() == MAX_CACHED_PATTERNS) return UNCACHED_PATTERN;
+            int unit = DAYS;
+            for (int i = 0; i < format.length() && unit != UNCACHED; i++) {
+                char c = format.charAt(i);
+                if (c == 's' || c == 'S') {
+                    unit = UNCACHED;
+                } else if ("HkKhmaZzX".indexOf(c) >= 0) {
+                    // zone name and offset may change within a day, but on a minute boundary
+                    unit = MINUTES;
+                }
+            }
+            pattern = new int[]{patterns.size(), unit};
+            patterns.put(format, pattern);
+        }
+        return pattern;
+    }
+
+    /*
+     * Drops cached time zone if it differs from the default one.
+     * */
+    static void checkTimeZone() {
+        TimeZone zone = timeZone;
+        if (zone != null && !zone.getID().equals(TimeZone.getDefault().getID())) {
+            onTimeZoneChanged();
+        }
+    }
+
+    static TimeZone getTimeZone() {
+        TimeZone zone = timeZone;
+        if (zone == null) {
+            zone = TimeZone.getDefault();
+            timeZone = zone;
+        }
+        return zone;
+    }
+
+    private static class FormatsCache extends LinkedHashMap<String, SimpleDateFormat> {
+
+        private static final long serialVersionUID = 1L;
+
+        private Locale locale;
+        private int version;
+
+        FormatsCache() {
+            super(MAX_CACHED_FORMATS, 0.75f, true);
+        }
+
+        SimpleDateFormat get(String pattern, Locale locale, int version) {
+            if (version != this.version || !locale.equals(this.locale)) {
+                clear();
+                this.locale = locale;
+                this.version = version;
+            }
+            SimpleDateFormat format = get(pattern);
+            if (format == null) {
+                format = new SimpleDateFormat(pattern, locale);
+                format.setTimeZone(getTimeZone());
+                put(pattern, format);
+            }
+            return format;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SimpleDateFormat> eldest) {
+            return size() > MAX_CACHED_FORMATS;
+        }
+    }
+
     /**
      * Interface used to format dates before they were displayed (e.g. dialogs time, messages date headers etc.).
      */
@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright 2016 stfalcon.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.stfalcon.chatkit.utils;
+
+import java.util.Calendar;
+
+/**
+ * Bounds of yesterday, today and the current year in default time zone. They are calculated once and
+ * recalculated by the first check after local midnight or time zone change, so checks only compare milliseconds.
+ */
+final class DayClock {
+
+    private static volatile Bounds bounds;
+
+    private DayClock() {
+        throw new AssertionError();
+    }
+
+    static boolean isToday(long millis) {
+        Bounds bounds = current();
+        return millis >= bounds.todayStart && millis < bounds.tomorrowStart;
+    }
+
+    static boolean isYesterday(long millis) {
+        Bounds bounds = current();
+        return millis >= bounds.yesterdayStart && millis < bounds.todayStart;
+    }
+
+    static boolean isCurrentYear(long millis) {
+        Bounds bounds = current();
+        return millis >= bounds.yearStart && millis < bounds.nextYearStart;
+    }
+
+    private static Bounds current() {
+        Bounds current = bounds;
+        long now = System.currentTimeMillis();
+        int timeZoneVersion = DateFormatter.getTimeZoneVersion();
+        // clock can also be moved back by the user
+        if (current == null || now >= current.tomorrowStart || now < current.todayStart
+                || current.timeZoneVersion != timeZoneVersion) {
+            current = new Bounds(now, timeZoneVersion);
+            bounds = current;
+        }
+        return current;
+    }
+
+    private static class Bounds {
+
+        private final long yesterdayStart;
+        private final long todayStart;
+        private final long tomorrowStart;
+        private final long yearStart;
+        private final long nextYearStart;
+        private final int timeZoneVersion;
+
+        Bounds(long now, int timeZoneVersion) {
+            this.timeZoneVersion = timeZoneVersion;
+            Calendar calendar = Calendar.getInstance(DateFormatter.getTimeZone());
+            calendar.setTimeInMillis(now);
+            calendar.set(Calendar.HOUR_OF_DAY, 0);
+            calendar.set(Calendar.MINUTE, 0);
+            calendar.set(Calendar.SECOND, 0);
+            calendar.set(Calendar.MILLISECOND, 0);
+            todayStart = calendar.getTimeInMillis();
+            calendar.add(Calendar.DAY_OF_MONTH, -1);
+            yesterdayStart = calendar.getTimeInMillis();
+            calendar.add(Calendar.DAY_OF_MONTH, 2);
+            tomorrowStart = calendar.getTimeInMillis();
+
+            calendar.setTimeInMillis(todayStart);
+            calendar.set(Calendar.DAY_OF_YEAR, 1);
+            yearStart = calendar.getTimeInMillis();
+            calendar.add(Calendar.YEAR, 1);
+            nextYearStart = calendar.getTimeInMillis();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright 2016 stfalcon.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.stfalcon.chatkit.utils;
+
+import java.util.Arrays;
+
+/**
+ * LRU cache of formatted dates with primitive keys, so a lookup doesn't allocate.
+ * Entries are kept in arrays: hash buckets are chained through {@code chain},
+ * recency order is a doubly linked list through {@code newer} and {@code older}.
+ * Not thread safe.
+ */
+final class FormattedDatesCache {
+
+    private static final int NONE = -1;
+
+    private final long[] keys;
+    private final String[] values;
+    private final int[] chain;
+    private final int[] newer;
+    private final int[] older;
+    private final int[] buckets;
+    private int size;
+    private int newest = NONE;
+    private int oldest = NONE;
+
+    FormattedDatesCache(int capacity) {
+        keys = new long[capacity];
+        values = new String[capacity];
+        chain = new int[capacity];
+        newer = new int[capacity];
+        older = new int[capacity];
+        buckets = new int[Integer.highestOneBit(capacity * 2 - 1) * 2];
+        Arrays.fill(buckets, NONE);
+    }
+
+    String get(long key) {
+        for (int slot = buckets[bucketOf(key)]; slot != NONE; slot = chain[slot]) {
+            if (keys[slot] == key) {
+                unlink(slot);
+                linkAsNewest(slot);
+                return values[slot];
+            }
+        }
+        return null;
+    }
+
+    void put(long key, String value) {
+        if (get(key) != null) {
+            values[newest] = value;
+            return;
+        }
+        int slot;
+        if (size < keys.length) {
+            slot = size++;
+        } else {
+            slot = oldest;
+            unlink(slot);
+            removeFromBucket(slot);
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        int bucket = bucketOf(key);
+        chain[slot] = buckets[bucket];
+        buckets[bucket] = slot;
+        linkAsNewest(slot);
+    }
+
+    void clear() {
+        Arrays.fill(buckets, NONE);
+        Arrays.fill(values, null);
+        size = 0;
+        newest = oldest = NONE;
+    }
+
+    private int bucketOf(long key) {
+        int hash = (int) (key ^ (key >>> 32)) * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & (buckets.length - 1);
+    }
+
+    private void removeFromBucket(int slot) {
+        int bucket = bucketOf(keys[slot]);
+        if (buckets[bucket] == slot) {
+            buckets[bucket] = chain[slot];
+            return;
+        }
+        for (int i = buckets[bucket]; i != NONE; i = chain[i]) {
+            if (chain[i] == slot) {
+                chain[i] = chain[slot];
+                return;
+            }
+        }
+    }
+
+    private void unlink(int slot) {
+        if (newer[slot] != NONE) older[newer[slot]] = older[slot];
+        else newest = older[slot];
+        if (older[slot] != NONE) newer[older[slot]] = newer[slot];
+        else oldest = newer[slot];
+    }
+
+    private void linkAsNewest(int slot) {
+        newer[slot] = NONE;
+        older[slot] = newest;
+        if (newest != NONE) newer[newest] = slot;
+        newest = slot;
+        if (oldest == NONE) oldest = slot;
+    }
+}
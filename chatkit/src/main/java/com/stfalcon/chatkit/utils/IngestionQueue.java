@@ -0,0 +1,246 @@
+/*******************************************************************************
+ * Copyright 2016 stfalcon.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.stfalcon.chatkit.utils;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Accepts changes of adapter items from any thread and applies them on the main thread once per frame.
+ * Operations on the same id which weren't applied yet are coalesced, so only the latest state of an item
+ * goes to the adapter: an update after add is applied as add, an update after delete is dropped, otherwise
+ * the latest operation wins. Coalesced operations are applied in the order of the latest operation on each id.
+ * If applying takes longer than the frame budget, the rest is applied in the next frames.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class IngestionQueue<ITEM> {
+
+    private static final int DEFAULT_FRAME_BUDGET_MILLIS = 4;
+    private static final int MAX_ADD_BATCH = 32;
+
+    private static final int ADD = 0;
+    private static final int UPDATE = 1;
+    private static final int DELETE = 2;
+
+    private final Target<ITEM> target;
+    private final ConcurrentLinkedQueue<Operation<ITEM>> incoming = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean isScheduled = new AtomicBoolean();
+    private final LinkedHashMap<String, Operation<ITEM>> pending = new LinkedHashMap<>();
+    private volatile long frameBudgetNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_FRAME_BUDGET_MILLIS);
+    private Object frameCallback;
+
+    private final Runnable drainTask = new Runnable() {
+        @Override
+        public void run() {
+            drain(frameBudgetNanos);
+        }
+    };
+
+    private final Runnable scheduleTask = new Runnable() {
+        @Override
+        public void run() {
+            scheduleFrame();
+        }
+    };
+
+    /**
+     * Creates queue for the target, adapters create their own queues (see
+     * {@link com.stfalcon.chatkit.messages.MessagesListAdapter#getIngestionQueue()}).
+     *
+     * @param target receiver of the operations, called on the main thread.
+     */
+    public IngestionQueue(Target<ITEM> target) {
+        this.target = target;
+    }
+
+    /**
+     * Adds new item, or updates it if item with the same id is already there. Can be called from any thread.
+     *
+     * @param item item to add.
+     */
+    public void add(ITEM item) {
+        enqueue(new Operation<>(ADD, target.getId(item), item));
+    }
+
+    /**
+     * Updates item by its id. Can be called from any thread.
+     *
+     * @param item updated item.
+     */
+    public void update(ITEM item) {
+        enqueue(new Operation<>(UPDATE, target.getId(item), item));
+    }
+
+    /**
+     * Deletes item by its id. Can be called from any thread.
+     *
+     * @param id identifier of item to delete.
+     */
+    public void delete(String id) {
+        enqueue(new Operation<ITEM>(DELETE, id, null));
+    }
+
+    /**
+     * Sets how long operations can be applied during one frame. Default value is 4 ms.
+     *
+     * @param millis max time in milliseconds.
+     */
+    public void setFrameBudget(int millis) {
+        frameBudgetNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * Applies all queued operations at once. Must be called on the main thread,
+     * e.g. before reading items of the adapter.
+     */
+    public void flush() {
+        drain(Long.MAX_VALUE);
+    }
+
+    private void enqueue(Operation<ITEM> operation) {
+        incoming.offer(operation);
+        if (isScheduled.compareAndSet(false, true)) {
+            if (TaskExecutors.isMainThread()) {
+                scheduleFrame();
+            } else {
+                TaskExecutors.postToMainThread(scheduleTask);
+            }
+        }
+    }
+
+    private void scheduleFrame() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            if (frameCallback == null) frameCallback = new DrainFrameCallback();
+            Choreographer.getInstance().postFrameCallback((Choreographer.FrameCallback) frameCallback);
+        } else {
+            TaskExecutors.postToMainThread(drainTask);
+        }
+    }
+
+    /*
+     * Applies queued operations until the budget is spent, the rest is scheduled to the next frame.
+     * */
+    void drain(long budgetNanos) {
+        isScheduled.set(false);
+        for (Operation<ITEM> operation; (operation = incoming.poll()) != null; ) {
+            // removed first, so the coalesced operation takes the place of the latest one
+            Operation<ITEM> previous = pending.remove(operation.id);
+            if (previous != null && operation.type == UPDATE) {
+                if (previous.type == ADD) {
+                    // the item may not be in adapter yet, so it's still added with the latest state
+                    operation = new Operation<>(ADD, operation.id, operation.item);
+                } else if (previous.type == DELETE) {
+                    // late update of a deleted item mustn't cancel the deletion
+                    operation = previous;
+                }
+            }
+            pending.put(operation.id, operation);
+        }
+
+        long start = System.nanoTime();
+        List<ITEM> added = new ArrayList<>();
+        Iterator<Operation<ITEM>> iterator = pending.values().iterator();
+        while (iterator.hasNext()) {
+            Operation<ITEM> operation = iterator.next();
+            iterator.remove();
+            if (operation.type == ADD) {
+                added.add(operation.item);
+                if (added.size() == MAX_ADD_BATCH) addAll(added);
+            } else {
+                addAll(added);
+                if (operation.type == UPDATE) {
+                    target.update(operation.item);
+                } else {
+                    target.delete(operation.id);
+                }
+            }
+            if (System.nanoTime() - start >= budgetNanos) break;
+        }
+        addAll(added);
+
+        if (!pending.isEmpty() && isScheduled.compareAndSet(false, true)) {
+            scheduleFrame();
+        }
+    }
+
+    private void addAll(List<ITEM> added) {
+        if (added.isEmpty()) return;
+        target.add(new ArrayList<>(added));
+        added.clear();
+    }
+
+    /*
+     * INTERFACES
+     * */
+
+    /**
+     * Receiver of the operations. All methods are called on the main thread.
+     */
+    public interface Target<ITEM> {
+
+        /**
+         * Returns identifier of the item, operations with the same identifier are coalesced.
+         */
+        String getId(ITEM item);
+
+        /**
+         * Adds items in the order they were queued, items which are already there should be updated.
+         */
+        void add(List<ITEM> items);
+
+        /**
+         * Updates item if it's there.
+         */
+        void update(ITEM item);
+
+        /**
+         * Deletes item if it's there.
+         */
+        void delete(String id);
+    }
+
+    private static class Operation<ITEM> {
+
+        private final int type;
+        private final String id;
+        private final ITEM item;
+
+        Operation(int type, String id, ITEM item) {
+            this.type = type;
+            this.id = id;
+            this.item = item;
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private class DrainFrameCallback implements Choreographer.FrameCallback {
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            drain(frameBudgetNanos);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright 2016 stfalcon.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.stfalcon.chatkit.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors used by the library for the work that shouldn't block the main thread.
+ */
+public final class TaskExecutors {
+
+    private static final int BACKGROUND_THREADS = 2;
+    private static final int KEEP_ALIVE_SECONDS = 30;
+
+    private static Executor background;
+    private static Handler mainHandler;
+
+    private TaskExecutors() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Returns executor for background work (diffing, text processing, paging etc.).
+     *
+     * @return executor set by {@link #setBackground(Executor)} or default one.
+     */
+    public static synchronized Executor background() {
+        if (background == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                    BACKGROUND_THREADS, BACKGROUND_THREADS,
+                    KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(),
+                    new BackgroundThreadFactory());
+            executor.allowCoreThreadTimeOut(true);
+            background = executor;
+        }
+        return background;
+    }
+
+    /**
+     * Sets executor for the library background work, e.g. to share the thread pool of your app.
+     *
+     * @param executor executor to use.
+     */
+    public static synchronized void setBackground(@NonNull Executor executor) {
+        background = executor;
+    }
+
+    /**
+     * Posts task to the main thread.
+     *
+     * @param task task to run.
+     */
+    public static void postToMainThread(Runnable task) {
+        getMainHandler().post(task);
+    }
+
+    /**
+     * Returns {@code true} if called from the main thread.
+     */
+    public static boolean isMainThread() {
+        return Looper.myLooper() == Looper.getMainLooper();
+    }
+
+    private static synchronized Handler getMainHandler() {
+        if (mainHandler == null) {
+            mainHandler = new Handler(Looper.getMainLooper());
+        }
+        return mainHandler;
+    }
+
+    private static class BackgroundThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@NonNull final Runnable runnable) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "ChatKit #" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
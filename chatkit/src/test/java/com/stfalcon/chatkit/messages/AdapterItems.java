@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright 2016 stfalcon.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.stfalcon.chatkit.messages;
+
+import android.support.v7.widget.RecyclerView;
+
+import com.stfalcon.chatkit.utils.DateFormatter;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Helpers for tests of MessagesListAdapter items.
+ * */
+final class AdapterItems {
+
+    /*
+     * Stands for a date header of the message above it in expected items.
+     * */
+    static final Object HEADER = new Object();
+
+    private AdapterItems() {
+        throw new AssertionError();
+    }
+
+    static TestMessage message(String id, int daysAgo, int hour) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.DAY_OF_MONTH, -daysAgo);
+        calendar.set(Calendar.HOUR_OF_DAY, hour);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return new TestMessage(id, calendar.getTimeInMillis());
+    }
+
+    @SuppressWarnings("deprecation")
+    static Object itemAt(MessagesListAdapter<?> adapter, int position) {
+        return adapter.items.get(position).item;
+    }
+
+    static void assertItems(MessagesListAdapter<?> adapter, Object... expected) {
+        assertEquals(expected.length, adapter.getItemCount());
+        for (int i = 0; i < expected.length; i++) {
+            Object item = itemAt(adapter, i);
+            if (expected[i] == HEADER) {
+                assertTrue("header expected at " + i, item instanceof Date);
+                TestMessage previous = (TestMessage) itemAt(adapter, i - 1);
+                assertTrue("header of wrong day at " + i,
+                        DateFormatter.isSameDay((Date) item, previous.getCreatedAt()));
+            } else {
+                assertSame(expected[i], item);
+            }
+        }
+    }
+
+    /*
+     * Records notifications of the adapter and counts items they describe.
+     * */
+    static class Notifications extends RecyclerView.AdapterDataObserver {
+
+        final List<String> calls = new ArrayList<>();
+        int itemCount;
+        private final MessagesListAdapter<?> adapter;
+
+        Notifications(MessagesListAdapter<?> adapter) {
+            this.adapter = adapter;
+            itemCount = adapter.getItemCount();
+            adapter.registerAdapterDataObserver(this);
+        }
+
+        void clear() {
+            calls.clear();
+        }
+
+        @Override
+        public void onChanged() {
+            calls.add("reset");
+            itemCount = adapter.getItemCount();
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount) {
+            calls.add("change " + positionStart + " " + itemCount);
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            calls.add("insert " + positionStart + " " + itemCount);
+            this.itemCount += itemCount;
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            calls.add("remove " + positionStart + " " + itemCount);
+            this.itemCount -= itemCount;
+        }
+
+        @Override
+        public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+            calls.add("move " + fromPosition + " " + toPosition);
+        }
+    }
+}
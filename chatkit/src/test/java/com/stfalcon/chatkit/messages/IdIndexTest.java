@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright 2016 stfalcon.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.stfalcon.chatkit.messages;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class IdIndexTest {
+
+    // all of them have the same hash code, so they share one cluster
+    private static final String[] COLLIDING = {"AaAa", "AaBB", "BBAa", "BBBB"};
+
+    private final IdIndex index = new IdIndex();
+
+    @Test
+    public void put_replacesValueOfSameKey() {
+        index.put("a", 1);
+        index.put("a", 2);
+
+        assertEquals(2, index.get("a"));
+        assertEquals(IdIndex.NOT_FOUND, index.get("b"));
+        assertEquals(IdIndex.NOT_FOUND, index.get(null));
+    }
+
+    @Test
+    public void remove_keepsFollowingKeysOfCluster() {
+        for (int i = 0; i < COLLIDING.length; i++) {
+            index.put(COLLIDING[i], i);
+        }
+        index.remove(COLLIDING[1], 1);
+
+        assertEquals(0, index.get(COLLIDING[0]));
+        assertEquals(IdIndex.NOT_FOUND, index.get(COLLIDING[1]));
+        assertEquals(2, index.get(COLLIDING[2]));
+        assertEquals(3, index.get(COLLIDING[3]));
+
+        index.remove(COLLIDING[0], 0);
+        index.put(COLLIDING[1], 5);
+        assertEquals(5, index.get(COLLIDING[1]));
+        assertEquals(2, index.get(COLLIDING[2]));
+        assertEquals(3, index.get(COLLIDING[3]));
+    }
+
+    @Test
+    public void remove_ignoresStaleValue() {
+        index.put("a", 1);
+        index.remove("a", 2);
+
+        assertEquals(1, index.get("a"));
+    }
+
+    @Test(timeout = 10000)
+    public void removedKeys_dontFillTable() {
+        // without tombstones a lookup of a missing key still ends on an empty slot
+        for (int i = 0; i < 10000; i++) {
+            index.put("m" + i, i);
+            if (i >= 5) {
+                index.remove("m" + (i - 5), i - 5);
+            }
+        }
+        for (int i = 0; i < 9995; i++) {
+            assertEquals(IdIndex.NOT_FOUND, index.get("m" + i));
+        }
+        for (int i = 9995; i < 10000; i++) {
+            assertEquals(i, index.get("m" + i));
+        }
+    }
+
+    @Test
+    public void resize_keepsAllEntries() {
+        for (int i = 0; i < 1000; i++) {
+            index.put("m" + i, i);
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            index.remove("m" + i, i);
+        }
+        for (int i = 1000; i < 2000; i++) {
+            index.put("m" + i, i);
+        }
+
+        for (int i = 0; i < 2000; i++) {
+            assertEquals(i < 1000 && i % 2 == 0 ? IdIndex.NOT_FOUND : i, index.get("m" + i));
+        }
+    }
+
+    @Test
+    public void clear_dropsAllEntries() {
+        for (int i = 0; i < 100; i++) {
+            index.put("m" + i, i);
+        }
+        index.clear();
+
+        assertEquals(IdIndex.NOT_FOUND, index.get("m1"));
+        index.put("m1", 7);
+        assertEquals(7, index.get("m1"));
+    }
+}
@@ -0,0 +1,213 @@
+/*******************************************************************************
+ * Copyright 2016 stfalcon.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.stfalcon.chatkit.messages;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ItemsStoreTest {
+
+    private final ItemsStore store = new ItemsStore();
+    private final List<Object> expected = new ArrayList<>();
+
+    @Test
+    public void addAtBothEnds_wrapsAroundAndGrows() {
+        for (int i = 0; i < 40; i++) {
+            // adding to the start moves head backwards over the end of arrays
+            if (i % 2 == 0) {
+                add(0, new TestMessage("m" + i, i));
+            } else {
+                add(expected.size(), new TestMessage("m" + i, i));
+            }
+            assertStore();
+        }
+    }
+
+    @Test
+    public void removeFromStart_thenAddToEnd_wrapsAround() {
+        for (int i = 0; i < 16; i++) {
+            add(i, new TestMessage("m" + i, i));
+        }
+        for (int i = 0; i < 10; i++) {
+            remove(0);
+        }
+        for (int i = 16; i < 26; i++) {
+            add(expected.size(), new TestMessage("m" + i, i));
+        }
+        assertStore();
+
+        add(3, new TestMessage("middle", 0));
+        remove(10);
+        assertStore();
+    }
+
+    @Test
+    public void headers_areCountedAndNotIndexed() {
+        add(0, new TestMessage("m0", 0));
+        add(1, new Date(0));
+        add(0, new TestMessage("m1", 1));
+
+        assertTrue(store.isHeader(2));
+        assertFalse(store.isHeader(0));
+        assertEquals(1, store.getHeadersCount());
+
+        remove(2);
+        assertEquals(0, store.getHeadersCount());
+        assertStore();
+    }
+
+    @Test
+    public void removedMessage_releasesItsHandle() {
+        TestMessage first = new TestMessage("first", 0);
+        add(0, first);
+        add(1, new TestMessage("second", 1));
+        remove(0);
+
+        // the free handle of the removed message is taken by the next one
+        add(1, new TestMessage("third", 2));
+        assertEquals(-1, store.indexOf("first"));
+        assertStore();
+
+        add(0, first);
+        assertStore();
+    }
+
+    @Test
+    public void handlesReusedManyTimes_keepPositions() {
+        for (int i = 0; i < 8; i++) {
+            add(i, new TestMessage("m" + i, i));
+        }
+        for (int i = 8; i < 200; i++) {
+            remove(i % 3 == 0 ? 0 : expected.size() / 2);
+            add(i % 2 == 0 ? 0 : expected.size(), new TestMessage("m" + i, i));
+            assertStore();
+        }
+    }
+
+    @Test
+    public void set_replacesItemWithoutStructuralChange() {
+        add(0, new TestMessage("old", 0));
+        add(1, new Date(0));
+        store.setSelected(0, true);
+        int version = store.getVersion();
+
+        TestMessage replacement = new TestMessage("new", 0);
+        store.set(0, replacement, 0, 0);
+        expected.set(0, replacement);
+
+        assertEquals(version, store.getVersion());
+        assertEquals(-1, store.indexOf("old"));
+        assertFalse(store.isSelected(0));
+        assertEquals(0, store.getSelectedCount());
+        assertStore();
+    }
+
+    @Test
+    public void removeRanges_removesAllRangesInOnePass() {
+        for (int i = 0; i < 20; i++) {
+            add(i, i % 5 == 4 ? new Date(i) : new TestMessage("m" + i, i));
+        }
+        store.setSelected(1, true);
+        store.setSelected(3, true);
+        store.setSelected(12, true);
+
+        store.removeRanges(new int[]{2, 5, 15}, new int[]{1, 3, 5}, 3);
+        for (int i = 19; i >= 15; i--) {
+            expected.remove(i);
+        }
+        for (int i = 7; i >= 5; i--) {
+            expected.remove(i);
+        }
+        expected.remove(2);
+
+        assertStore();
+        assertEquals(3, store.getHeadersCount());
+        assertEquals(3, store.getSelectedCount());
+        assertTrue(store.isSelected(1));
+        assertTrue(store.isSelected(2));
+        assertTrue(store.isSelected(8));
+    }
+
+    @Test
+    public void removeRanges_afterWrapAround() {
+        for (int i = 0; i < 12; i++) {
+            add(0, new TestMessage("m" + i, i));
+        }
+        store.removeRanges(new int[]{0, 4, 10}, new int[]{2, 1, 2}, 3);
+        expected.subList(10, 12).clear();
+        expected.remove(4);
+        expected.subList(0, 2).clear();
+        assertStore();
+    }
+
+    @Test
+    public void nextSelected_skipsUnselectedWords() {
+        for (int i = 0; i < 150; i++) {
+            add(0, new TestMessage("m" + i, i));
+        }
+        store.setSelected(3, true);
+        store.setSelected(140, true);
+
+        assertEquals(3, store.nextSelected(0));
+        assertEquals(140, store.nextSelected(4));
+        assertEquals(-1, store.nextSelected(141));
+    }
+
+    @Test
+    public void clear_dropsItemsAndIndex() {
+        for (int i = 0; i < 30; i++) {
+            add(i, new TestMessage("m" + i, i));
+        }
+        store.setSelected(5, true);
+        store.clear();
+        expected.clear();
+
+        assertEquals(0, store.getSelectedCount());
+        assertEquals(-1, store.indexOf("m5"));
+        add(0, new TestMessage("m5", 5));
+        assertStore();
+    }
+
+    private void add(int position, Object item) {
+        store.add(position, item, 0, 0);
+        expected.add(position, item);
+    }
+
+    private void remove(int position) {
+        store.remove(position);
+        expected.remove(position);
+    }
+
+    private void assertStore() {
+        assertEquals(expected.size(), store.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Object item = expected.get(i);
+            assertSame(item, store.get(i));
+            if (item instanceof TestMessage) {
+                assertEquals(i, store.indexOf(((TestMessage) item).getId()));
+            }
+        }
+    }
+}
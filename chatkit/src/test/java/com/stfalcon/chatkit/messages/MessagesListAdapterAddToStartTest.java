@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright 2016 stfalcon.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.stfalcon.chatkit.messages;
+
+import com.stfalcon.chatkit.messages.AdapterItems.Notifications;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static com.stfalcon.chatkit.messages.AdapterItems.HEADER;
+import static com.stfalcon.chatkit.messages.AdapterItems.message;
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class MessagesListAdapterAddToStartTest {
+
+    private final MessagesListAdapter<TestMessage> adapter = new MessagesListAdapter<>("me", null);
+
+    private final TestMessage evening = message("evening", 0, 18);
+    private final TestMessage noon = message("noon", 0, 12);
+    private final TestMessage morning = message("morning", 0, 9);
+    private final TestMessage yesterday = message("yesterday", 1, 12);
+    private final TestMessage older = message("older", 2, 12);
+
+    @Test
+    public void batchOfNewDay_isAddedWithItsHeaderInOneInsert() {
+        Notifications notifications = load(yesterday);
+
+        adapter.addToStart(new ArrayList<>(Arrays.asList(evening, noon, morning)), false, false);
+
+        assertItems(evening, noon, morning, HEADER, yesterday, HEADER);
+        assertCalls(notifications, "insert 0 4");
+    }
+
+    @Test
+    public void batchOfLoadedDay_joinsItsGroup() {
+        Notifications notifications = load(morning, yesterday);
+
+        adapter.addToStart(new ArrayList<>(Arrays.asList(evening, noon)), false, false);
+
+        assertItems(evening, noon, morning, HEADER, yesterday, HEADER);
+        assertCalls(notifications, "insert 0 2");
+    }
+
+    @Test
+    public void batchOfSeveralDays_getsHeaderForEachDay() {
+        Notifications notifications = load(older);
+
+        adapter.addToStart(new ArrayList<>(Arrays.asList(noon, yesterday)), false, false);
+
+        assertItems(noon, HEADER, yesterday, HEADER, older, HEADER);
+        assertCalls(notifications, "insert 0 4");
+    }
+
+    @Test
+    public void chronologicalBatch_isReversed() {
+        load(yesterday);
+
+        adapter.addToStart(new ArrayList<>(Arrays.asList(morning, noon, evening)), true, false);
+
+        assertItems(evening, noon, morning, HEADER, yesterday, HEADER);
+    }
+
+    @Test
+    public void batchIntoEmptyList_addsHeaderAtEnd() {
+        Notifications notifications = load();
+
+        adapter.addToStart(new ArrayList<>(Arrays.asList(noon, morning)), false, false);
+
+        assertItems(noon, morning, HEADER);
+        assertCalls(notifications, "insert 0 3");
+    }
+
+    private Notifications load(TestMessage... messages) {
+        adapter.addToEnd(Arrays.asList(messages), false);
+        return new Notifications(adapter);
+    }
+
+    private void assertItems(Object... expected) {
+        AdapterItems.assertItems(adapter, expected);
+    }
+
+    private void assertCalls(Notifications notifications, String... calls) {
+        assertEquals(Arrays.asList(calls), notifications.calls);
+        assertEquals(adapter.getItemCount(), notifications.itemCount);
+    }
+}
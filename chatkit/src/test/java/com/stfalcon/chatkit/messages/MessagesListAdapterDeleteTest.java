@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright 2016 stfalcon.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.stfalcon.chatkit.messages;
+
+import com.stfalcon.chatkit.messages.AdapterItems.Notifications;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+
+import static com.stfalcon.chatkit.messages.AdapterItems.HEADER;
+import static com.stfalcon.chatkit.messages.AdapterItems.message;
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class MessagesListAdapterDeleteTest {
+
+    private final MessagesListAdapter<TestMessage> adapter = new MessagesListAdapter<>("me", null);
+
+    private final TestMessage evening = message("evening", 0, 18);
+    private final TestMessage morning = message("morning", 0, 9);
+    private final TestMessage yesterdayEvening = message("yesterdayEvening", 1, 18);
+    private final TestMessage yesterdayMorning = message("yesterdayMorning", 1, 9);
+    private final TestMessage older = message("older", 2, 12);
+    private Notifications notifications;
+
+    @Before
+    public void setUp() {
+        adapter.addToEnd(Arrays.asList(evening, morning, yesterdayEvening, yesterdayMorning, older), false);
+        notifications = new Notifications(adapter);
+    }
+
+    @Test
+    public void deleteByIds_ofScatteredMessages_removesRangesFromEnd() {
+        adapter.deleteByIds(new String[]{"yesterdayMorning", "morning"});
+
+        assertItems(evening, HEADER, yesterdayEvening, HEADER, older, HEADER);
+        assertCalls("remove 4 1", "remove 1 1");
+    }
+
+    @Test
+    public void deleteByIds_ofWholeDay_removesItsHeaderInSameRange() {
+        adapter.deleteByIds(new String[]{"yesterdayEvening", "yesterdayMorning"});
+
+        assertItems(evening, morning, HEADER, older, HEADER);
+        assertCalls("remove 3 3");
+    }
+
+    @Test
+    public void deleteByIds_ofNewestDay_removesHeaderAtTop() {
+        adapter.deleteByIds(new String[]{"morning", "evening"});
+
+        assertItems(yesterdayEvening, yesterdayMorning, HEADER, older, HEADER);
+        assertCalls("remove 0 3");
+    }
+
+    @Test
+    public void deleteByIds_ofLastMessages_keepsOtherHeaders() {
+        adapter.deleteByIds(new String[]{"older", "yesterdayEvening"});
+
+        assertItems(evening, morning, HEADER, yesterdayMorning, HEADER);
+        assertCalls("remove 6 2", "remove 3 1");
+    }
+
+    @Test
+    public void delete_skipsDuplicatesAndMissingMessages() {
+        adapter.delete(Arrays.asList(morning, morning, message("missing", 0, 12)));
+
+        assertItems(evening, HEADER, yesterdayEvening, yesterdayMorning, HEADER, older, HEADER);
+        assertCalls("remove 1 1");
+    }
+
+    @Test
+    public void delete_ofAllMessages_removesAllItems() {
+        adapter.delete(Arrays.asList(older, evening, yesterdayMorning, morning, yesterdayEvening));
+
+        assertItems();
+        assertCalls("remove 0 8");
+    }
+
+    private void assertItems(Object... expected) {
+        AdapterItems.assertItems(adapter, expected);
+    }
+
+    private void assertCalls(String... calls) {
+        assertEquals(Arrays.asList(calls), notifications.calls);
+        assertEquals(adapter.getItemCount(), notifications.itemCount);
+    }
+}
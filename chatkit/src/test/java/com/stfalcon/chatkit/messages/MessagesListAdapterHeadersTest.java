@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright 2016 stfalcon.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.stfalcon.chatkit.messages;
+
+import com.stfalcon.chatkit.messages.AdapterItems.Notifications;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+
+import static com.stfalcon.chatkit.messages.AdapterItems.HEADER;
+import static com.stfalcon.chatkit.messages.AdapterItems.message;
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class MessagesListAdapterHeadersTest {
+
+    private final MessagesListAdapter<TestMessage> adapter = new MessagesListAdapter<>("me", null);
+
+    private final TestMessage today = message("today", 0, 12);
+    private final TestMessage yesterday = message("yesterday", 1, 12);
+    private final TestMessage older = message("older", 2, 12);
+
+    @Test
+    public void update_ofSameDay_doesntTouchHeaders() {
+        Notifications notifications = load(today, yesterday, older);
+
+        adapter.update(message("yesterday", 1, 15));
+
+        assertItems(today, HEADER, itemAt(2), HEADER, older, HEADER);
+        assertCalls(notifications, "change 2 1");
+    }
+
+    @Test
+    public void update_toDayOfNewerGroup_mergesGroups() {
+        Notifications notifications = load(today, yesterday, older);
+
+        TestMessage moved = message("yesterday", 0, 9);
+        adapter.update(moved);
+
+        assertItems(today, moved, HEADER, older, HEADER);
+        assertCalls(notifications, "change 2 1", "change 1 2", "remove 3 1");
+    }
+
+    @Test
+    public void update_toOtherDay_splitsGroup() {
+        TestMessage first = message("first", 1, 18);
+        TestMessage last = message("last", 1, 9);
+        Notifications notifications = load(first, yesterday, last);
+
+        TestMessage moved = message("yesterday", 2, 12);
+        adapter.update(moved);
+
+        assertItems(first, HEADER, moved, HEADER, last, HEADER);
+        assertCalls(notifications, "change 1 1", "change 1 1", "insert 2 2");
+    }
+
+    @Test
+    public void updateAndMoveToStart_ofLastMessageOfDay_dropsItsHeader() {
+        Notifications notifications = load(today, yesterday, older);
+
+        TestMessage moved = message("yesterday", 0, 18);
+        adapter.updateAndMoveToStart(moved);
+
+        assertItems(moved, today, HEADER, older, HEADER);
+        assertCalls(notifications, "move 2 0", "change 0 1", "remove 3 1");
+    }
+
+    @Test
+    public void updateAndMoveToStart_toNewDay_addsHeaderOnce() {
+        Notifications notifications = load(yesterday, older);
+
+        TestMessage moved = message("older", 0, 18);
+        adapter.updateAndMoveToStart(moved);
+
+        assertItems(moved, HEADER, yesterday, HEADER);
+        assertCalls(notifications, "move 2 0", "change 0 1", "remove 3 1", "insert 1 1");
+    }
+
+    @Test
+    public void deleteById_ofLastMessageOfDay_removesItsHeader() {
+        Notifications notifications = load(today, yesterday, older);
+
+        adapter.deleteById("yesterday");
+
+        assertItems(today, HEADER, older, HEADER);
+        assertCalls(notifications, "remove 2 2");
+    }
+
+    @Test
+    public void deleteById_ofMessageInsideDay_keepsHeader() {
+        TestMessage evening = message("evening", 1, 18);
+        Notifications notifications = load(today, evening, yesterday);
+
+        adapter.deleteById("evening");
+
+        assertItems(today, HEADER, yesterday, HEADER);
+        assertCalls(notifications, "remove 2 1");
+    }
+
+    @Test
+    public void evict_fixesHeaderAtNewEdge() {
+        Notifications notifications = load(today, yesterday, older);
+
+        adapter.evict(1, 3);
+
+        assertItems(today, HEADER, older, HEADER);
+        assertCalls(notifications, "remove 1 2", "change 1 1");
+    }
+
+    @Test
+    public void evict_ofNewestItems_dropsHeaderAtTop() {
+        Notifications notifications = load(today, yesterday, older);
+
+        adapter.evict(0, 1);
+
+        assertItems(yesterday, HEADER, older, HEADER);
+        assertCalls(notifications, "remove 0 1", "remove 0 1");
+    }
+
+    private Notifications load(TestMessage... messages) {
+        adapter.addToEnd(Arrays.asList(messages), false);
+        return new Notifications(adapter);
+    }
+
+    private Object itemAt(int position) {
+        return AdapterItems.itemAt(adapter, position);
+    }
+
+    private void assertItems(Object... expected) {
+        AdapterItems.assertItems(adapter, expected);
+    }
+
+    private void assertCalls(Notifications notifications, String... calls) {
+        assertEquals(Arrays.asList(calls), notifications.calls);
+        assertEquals(adapter.getItemCount(), notifications.itemCount);
+    }
+}
@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright 2016 stfalcon.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.stfalcon.chatkit.messages;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+
+import static com.stfalcon.chatkit.messages.AdapterItems.HEADER;
+import static com.stfalcon.chatkit.messages.AdapterItems.message;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class MessagesListAdapterInsertTest {
+
+    private final MessagesListAdapter<TestMessage> adapter = new MessagesListAdapter<>("me", null);
+
+    @Test
+    public void insert_placesMessageByDate() {
+        TestMessage morning = message("morning", 1, 9);
+        TestMessage evening = message("evening", 1, 18);
+        adapter.addToEnd(Arrays.asList(evening, morning), false);
+
+        TestMessage noon = message("noon", 1, 12);
+        adapter.insert(noon);
+
+        assertItems(evening, noon, morning, HEADER);
+    }
+
+    @Test
+    public void insertAll_skipsDuplicates() {
+        TestMessage loaded = message("loaded", 1, 12);
+        adapter.addToEnd(Arrays.asList(loaded), false);
+
+        TestMessage first = message("new", 1, 14);
+        TestMessage duplicate = message("new", 1, 15);
+        adapter.insertAll(Arrays.asList(first, duplicate, message("loaded", 1, 16)));
+
+        // the first of duplicates is inserted, the loaded message isn't replaced
+        assertItems(first, loaded, HEADER);
+    }
+
+    @Test
+    public void insertAll_ordersSameTimeById() {
+        TestMessage loaded = message("b", 1, 12);
+        adapter.addToEnd(Arrays.asList(loaded), false);
+
+        TestMessage a = message("a", 1, 12);
+        TestMessage c = message("c", 1, 12);
+        TestMessage d = message("d", 1, 12);
+        adapter.insertAll(Arrays.asList(a, d, c));
+
+        assertItems(d, c, loaded, a, HEADER);
+    }
+
+    @Test
+    public void insertAll_intoLoadedDay_keepsOneHeader() {
+        TestMessage evening = message("evening", 1, 18);
+        TestMessage morning = message("morning", 1, 9);
+        adapter.addToEnd(Arrays.asList(evening, morning), false);
+
+        TestMessage night = message("night", 1, 23);
+        TestMessage early = message("early", 1, 6);
+        TestMessage noon = message("noon", 1, 12);
+        adapter.insertAll(Arrays.asList(noon, early, night));
+
+        assertItems(night, evening, noon, morning, early, HEADER);
+    }
+
+    @Test
+    public void insertAll_addsHeadersOfNewDays() {
+        TestMessage yesterday = message("yesterday", 1, 12);
+        adapter.addToEnd(Arrays.asList(yesterday), false);
+
+        TestMessage today = message("today", 0, 8);
+        TestMessage older = message("older", 3, 20);
+        TestMessage oldest = message("oldest", 3, 10);
+        adapter.insertAll(Arrays.asList(oldest, today, older));
+
+        assertItems(today, HEADER, yesterday, HEADER, older, oldest, HEADER);
+    }
+
+    @Test
+    public void insertAll_betweenDays_splitsGroups() {
+        TestMessage newer = message("newer", 0, 12);
+        TestMessage older = message("older", 4, 12);
+        adapter.addToEnd(Arrays.asList(newer, older), false);
+
+        TestMessage first = message("first", 2, 15);
+        TestMessage second = message("second", 2, 9);
+        adapter.insertAll(Arrays.asList(second, first));
+
+        assertItems(newer, HEADER, first, second, HEADER, older, HEADER);
+    }
+
+    private void assertItems(Object... expected) {
+        AdapterItems.assertItems(adapter, expected);
+    }
+}
@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright 2016 stfalcon.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.stfalcon.chatkit.messages;
+
+import com.stfalcon.chatkit.messages.AdapterItems.Notifications;
+import com.stfalcon.chatkit.utils.TaskExecutors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import static com.stfalcon.chatkit.messages.AdapterItems.HEADER;
+import static com.stfalcon.chatkit.messages.AdapterItems.message;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class MessagesListAdapterSubmitTest {
+
+    private final MessagesListAdapter<TestMessage> adapter = new MessagesListAdapter<>("me", null);
+    private final Queue<Runnable> backgroundTasks = new ArrayDeque<>();
+    private Executor defaultBackground;
+
+    private final TestMessage today = message("today", 0, 12);
+    private final TestMessage yesterday = message("yesterday", 1, 12);
+    private final TestMessage older = message("older", 2, 12);
+
+    @Before
+    public void setUp() {
+        defaultBackground = TaskExecutors.background();
+        // diffs are calculated only when the test runs them
+        TaskExecutors.setBackground(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                backgroundTasks.add(command);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        TaskExecutors.setBackground(defaultBackground);
+    }
+
+    @Test
+    public void submit_appliesSnapshot() {
+        Notifications notifications = load(yesterday);
+
+        adapter.submitMessages(Arrays.asList(today, yesterday, older), false);
+        runBackgroundTasks();
+
+        assertItems(today, HEADER, yesterday, HEADER, older, HEADER);
+        assertEquals(adapter.getItemCount(), notifications.itemCount);
+    }
+
+    @Test
+    public void submit_keepsMessagesAddedWhileCalculating() {
+        Notifications notifications = load(yesterday);
+
+        adapter.submitMessages(Arrays.asList(yesterday, older), false);
+        adapter.addToStart(today, false);
+        runBackgroundTasks();
+
+        assertItems(today, HEADER, yesterday, HEADER, older, HEADER);
+        assertEquals(adapter.getItemCount(), notifications.itemCount);
+    }
+
+    @Test
+    public void submit_keepsMessagesDeletedWhileCalculating() {
+        Notifications notifications = load(today, yesterday);
+
+        adapter.submitMessages(Arrays.asList(today, yesterday, older), false);
+        adapter.deleteById("yesterday");
+        runBackgroundTasks();
+
+        assertItems(today, HEADER, older, HEADER);
+        assertEquals(adapter.getItemCount(), notifications.itemCount);
+    }
+
+    @Test
+    public void submit_whileMessagesKeepComing_isAppliedAfterFewAttempts() {
+        Notifications notifications = load(yesterday);
+
+        adapter.submitMessages(Arrays.asList(yesterday, older), false);
+        TestMessage first = message("first", 0, 9);
+        TestMessage second = message("second", 0, 10);
+        TestMessage third = message("third", 0, 11);
+        for (TestMessage live : Arrays.asList(first, second, third)) {
+            adapter.addToStart(live, false);
+            runNextBackgroundTask();
+        }
+
+        assertTrue(backgroundTasks.isEmpty());
+        assertItems(third, second, first, HEADER, yesterday, HEADER, older, HEADER);
+        assertEquals(adapter.getItemCount(), notifications.itemCount);
+    }
+
+    @Test
+    public void newerSubmit_discardsPreviousOne() {
+        load(yesterday);
+
+        adapter.submitMessages(Arrays.asList(today, yesterday), false);
+        adapter.submitMessages(Arrays.asList(yesterday, older), false);
+        runBackgroundTasks();
+
+        assertItems(yesterday, HEADER, older, HEADER);
+    }
+
+    private Notifications load(TestMessage... messages) {
+        adapter.addToEnd(Arrays.asList(messages), false);
+        return new Notifications(adapter);
+    }
+
+    private void runBackgroundTasks() {
+        while (!backgroundTasks.isEmpty()) {
+            runNextBackgroundTask();
+        }
+    }
+
+    private void runNextBackgroundTask() {
+        backgroundTasks.remove().run();
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+    }
+
+    private void assertItems(Object... expected) {
+        AdapterItems.assertItems(adapter, expected);
+    }
+}
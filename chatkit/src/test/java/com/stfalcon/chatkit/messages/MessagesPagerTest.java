@@ -0,0 +1,309 @@
+/*******************************************************************************
+ * Copyright 2016 stfalcon.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.stfalcon.chatkit.messages;
+
+import com.stfalcon.chatkit.messages.MessagesDataSource.Direction;
+import com.stfalcon.chatkit.messages.MessagesDataSource.LoadState;
+import com.stfalcon.chatkit.utils.TaskExecutors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import static com.stfalcon.chatkit.messages.AdapterItems.HEADER;
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class MessagesPagerTest {
+
+    private static final int PAGE_SIZE = 3;
+
+    private final MessagesListAdapter<TestMessage> adapter = new MessagesListAdapter<>("me", null);
+    private final HistorySource source = new HistorySource(30);
+    private final Queue<Runnable> backgroundTasks = new ArrayDeque<>();
+    private Executor defaultBackground;
+
+    @Before
+    public void setUp() {
+        defaultBackground = TaskExecutors.background();
+        // pages are loaded only when the test runs the loads
+        TaskExecutors.setBackground(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                backgroundTasks.add(command);
+            }
+        });
+        adapter.setPrefetchDistance(0);
+    }
+
+    @After
+    public void tearDown() {
+        TaskExecutors.setBackground(defaultBackground);
+    }
+
+    @Test
+    public void setDataSource_loadsNewestPage() {
+        adapter.setDataSource(source, PAGE_SIZE);
+        runBackgroundTasks();
+
+        assertItems(0, 1, 2);
+        assertEquals(LoadState.IDLE, adapter.getLoadState(Direction.INITIAL));
+        assertEquals(LoadState.END, adapter.getLoadState(Direction.NEWER));
+    }
+
+    @Test
+    public void scrollToOldest_loadsOlderPage() {
+        adapter.setDataSource(source, PAGE_SIZE);
+        runBackgroundTasks();
+
+        adapter.onVisibleRangeChanged(0, 3);
+        assertEquals(LoadState.LOADING, adapter.getLoadState(Direction.OLDER));
+        runNextBackgroundTask();
+
+        assertItems(0, 1, 2, 3, 4, 5);
+        assertEquals(LoadState.IDLE, adapter.getLoadState(Direction.OLDER));
+    }
+
+    @Test
+    public void olderPage_ofChangedEdge_isRequestedAgain() {
+        adapter.setDataSource(source, PAGE_SIZE);
+        runBackgroundTasks();
+
+        adapter.onVisibleRangeChanged(0, 3);
+        adapter.deleteById(source.idOf(2));
+        runNextBackgroundTask();
+
+        // the page after the deleted message doesn't fit, the one after the new edge is loaded instead
+        assertEquals(1, backgroundTasks.size());
+        runNextBackgroundTask();
+        assertItems(0, 1, 2, 3, 4);
+    }
+
+    @Test
+    public void newerPage_ofChangedEdge_isRequestedAgain() {
+        adapter.setDataSource(source, PAGE_SIZE);
+        runBackgroundTasks();
+        adapter.scrollToMessage(source.idOf(10));
+        runBackgroundTasks();
+
+        adapter.onVisibleRangeChanged(0, 1);
+        adapter.deleteById(source.idOf(9));
+        runNextBackgroundTask();
+
+        assertEquals(1, backgroundTasks.size());
+        runNextBackgroundTask();
+        assertItems(7, 8, 9, 10, 11);
+    }
+
+    @Test
+    public void pageOfPreviousGeneration_isDropped() {
+        adapter.setDataSource(source, PAGE_SIZE);
+        Runnable initialLoad = backgroundTasks.remove();
+        adapter.scrollToMessage(source.idOf(10));
+        runBackgroundTasks();
+
+        // the newest page finishes loading after the page around the message
+        initialLoad.run();
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+
+        assertItems(9, 10, 11);
+        assertEquals(LoadState.IDLE, adapter.getLoadState(Direction.NEWER));
+    }
+
+    @Test
+    public void failedLoad_waitsForRetry() {
+        adapter.setDataSource(source, PAGE_SIZE);
+        runBackgroundTasks();
+
+        source.isFailing = true;
+        adapter.onVisibleRangeChanged(0, 3);
+        runNextBackgroundTask();
+        assertEquals(LoadState.ERROR, adapter.getLoadState(Direction.OLDER));
+
+        source.isFailing = false;
+        adapter.onVisibleRangeChanged(0, 3);
+        assertEquals(0, backgroundTasks.size());
+        adapter.retry();
+        runNextBackgroundTask();
+        assertItems(0, 1, 2, 3, 4, 5);
+    }
+
+    @Test
+    public void loadOverMaxMessages_evictsFarSide() {
+        adapter.setDataSource(source, PAGE_SIZE);
+        adapter.setMaxLoadedMessages(4);
+        runBackgroundTasks();
+
+        adapter.onVisibleRangeChanged(0, 3);
+        // scrolled back to the newest while the older page is loading
+        adapter.onVisibleRangeChanged(0, 1);
+        runNextBackgroundTask();
+
+        assertItems(0, 1, 2, 3);
+        assertEquals(LoadState.IDLE, adapter.getLoadState(Direction.OLDER));
+
+        adapter.onVisibleRangeChanged(0, 4);
+        assertEquals(LoadState.LOADING, adapter.getLoadState(Direction.OLDER));
+        runNextBackgroundTask();
+        assertEquals(source.history.get(6), AdapterItems.itemAt(adapter, 6));
+    }
+
+    @Test
+    public void sideWithLoadInFlight_isNotEvicted() {
+        adapter.setDataSource(source, PAGE_SIZE);
+        runBackgroundTasks();
+        adapter.onVisibleRangeChanged(0, 3);
+        runNextBackgroundTask();
+
+        adapter.onVisibleRangeChanged(0, 6);
+        assertEquals(LoadState.LOADING, adapter.getLoadState(Direction.OLDER));
+        adapter.onVisibleRangeChanged(0, 1);
+        adapter.setMaxLoadedMessages(2);
+
+        assertItems(0, 1, 2, 3, 4, 5);
+    }
+
+    @Test
+    public void liveMessage_aboveAnchoredPage_isAddedWhenNewestPageIsLoaded() {
+        adapter.setDataSource(source, PAGE_SIZE);
+        runBackgroundTasks();
+        adapter.scrollToMessage(source.idOf(10));
+        runBackgroundTasks();
+
+        TestMessage live = source.newMessage("live");
+        adapter.addToStart(live, false);
+        assertItems(9, 10, 11);
+
+        adapter.onVisibleRangeChanged(0, 1);
+        runBackgroundTasks();
+
+        assertEquals(LoadState.END, adapter.getLoadState(Direction.NEWER));
+        assertEquals(13, adapter.getMessagesCount());
+        assertEquals(live, AdapterItems.itemAt(adapter, 0));
+        assertEquals(source.history.get(0), AdapterItems.itemAt(adapter, 1));
+    }
+
+    @Test
+    public void refresh_keepsDeferredLiveMessages() {
+        adapter.setDataSource(source, PAGE_SIZE);
+        runBackgroundTasks();
+        adapter.scrollToMessage(source.idOf(10));
+        runBackgroundTasks();
+
+        TestMessage live = source.newMessage("live");
+        adapter.addToStart(live, false);
+        adapter.refresh();
+        runBackgroundTasks();
+
+        AdapterItems.assertItems(adapter, live, source.history.get(0),
+                source.history.get(1), source.history.get(2), HEADER);
+    }
+
+    private void runBackgroundTasks() {
+        while (!backgroundTasks.isEmpty()) {
+            runNextBackgroundTask();
+        }
+    }
+
+    private void runNextBackgroundTask() {
+        backgroundTasks.remove().run();
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+    }
+
+    /*
+     * Expects messages of the history at the given indices, all of them are of the same day.
+     * */
+    private void assertItems(int... indices) {
+        Object[] expected = new Object[indices.length + 1];
+        for (int i = 0; i < indices.length; i++) {
+            expected[i] = source.history.get(indices[i]);
+        }
+        expected[indices.length] = HEADER;
+        AdapterItems.assertItems(adapter, expected);
+    }
+
+    /*
+     * History of messages a minute apart, from newest to oldest.
+     * */
+    private static class HistorySource implements MessagesDataSource<TestMessage> {
+
+        private final List<TestMessage> history = new ArrayList<>();
+        private volatile boolean isFailing;
+
+        HistorySource(int size) {
+            long newest = AdapterItems.message("newest", 1, 18).getCreatedAt().getTime();
+            for (int i = 0; i < size; i++) {
+                history.add(new TestMessage("m" + i, newest - i * 60 * 1000L));
+            }
+        }
+
+        /*
+         * Returns message newer than the history, as if it was just received.
+         * */
+        TestMessage newMessage(String id) {
+            return new TestMessage(id, history.get(0).getCreatedAt().getTime() + 60 * 1000L);
+        }
+
+        String idOf(int index) {
+            return history.get(index).getId();
+        }
+
+        @Override
+        public List<TestMessage> loadInitial(int count) throws Exception {
+            return page(0, count);
+        }
+
+        @Override
+        public List<TestMessage> loadOlder(String id, int count) throws Exception {
+            int from = indexOf(id) + 1;
+            return page(from, from + count);
+        }
+
+        @Override
+        public List<TestMessage> loadNewer(String id, int count) throws Exception {
+            int to = indexOf(id);
+            return page(to - count, to);
+        }
+
+        @Override
+        public List<TestMessage> loadAround(String id, int count) throws Exception {
+            int from = indexOf(id) - count / 2;
+            return page(from, from + count);
+        }
+
+        private int indexOf(String id) {
+            return Integer.parseInt(id.substring(1));
+        }
+
+        private List<TestMessage> page(int from, int to) throws Exception {
+            if (isFailing) throw new Exception("failed to load");
+            return new ArrayList<>(history.subList(
+                    Math.max(from, 0), Math.max(Math.min(to, history.size()), 0)));
+        }
+    }
+}
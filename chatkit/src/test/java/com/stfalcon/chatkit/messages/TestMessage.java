@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright 2016 stfalcon.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.stfalcon.chatkit.messages;
+
+import com.stfalcon.chatkit.commons.models.IMessage;
+import com.stfalcon.chatkit.commons.models.IUser;
+
+import java.util.Date;
+
+/*
+ * Message of a single user for tests.
+ * */
+class TestMessage implements IMessage, IUser {
+
+    private final String id;
+    private final Date createdAt;
+    private final String text;
+
+    TestMessage(String id, long createdAt) {
+        this(id, createdAt, id);
+    }
+
+    TestMessage(String id, long createdAt, String text) {
+        this.id = id;
+        this.createdAt = new Date(createdAt);
+        this.text = text;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public String getText() {
+        return text;
+    }
+
+    @Override
+    public IUser getUser() {
+        return this;
+    }
+
+    @Override
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    @Override
+    public String getName() {
+        return "user";
+    }
+
+    @Override
+    public String getAvatar() {
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return id;
+    }
+}
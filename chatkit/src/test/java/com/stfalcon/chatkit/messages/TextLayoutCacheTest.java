@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright 2016 stfalcon.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.stfalcon.chatkit.messages;
+
+import com.stfalcon.chatkit.utils.TaskExecutors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class TextLayoutCacheTest {
+
+    private final TextLayoutCache cache = new TextLayoutCache(2);
+    private Executor defaultBackground;
+
+    private final TestMessage a = new TestMessage("a", 0, "first text");
+    private final TestMessage b = new TestMessage("b", 0, "second text");
+    private final TestMessage c = new TestMessage("c", 0, "third text");
+
+    @Before
+    public void setUp() {
+        defaultBackground = TaskExecutors.background();
+        // layouts are built right away
+        TaskExecutors.setBackground(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+        cache.setStyle(null, 480);
+    }
+
+    @After
+    public void tearDown() {
+        TaskExecutors.setBackground(defaultBackground);
+    }
+
+    @Test
+    public void get_ofSameIdTextAndWidth_returnsLayout() {
+        cache.precompute(a, "me");
+
+        assertNotNull(cache.get(a, false));
+        assertNotNull(cache.get(new TestMessage("a", 0, "first text"), false));
+    }
+
+    @Test
+    public void get_ofChangedText_returnsNull() {
+        cache.precompute(a, "me");
+
+        assertNull(cache.get(new TestMessage("a", 0, "edited text"), false));
+    }
+
+    @Test
+    public void get_ofOtherWidth_returnsNull() {
+        cache.precompute(a, "me");
+
+        // outcoming bubbles are measured with their own width
+        assertNull(cache.get(a, true));
+        cache.setStyle(null, 320);
+        assertNull(cache.get(a, false));
+    }
+
+    @Test
+    public void precompute_overMaxSize_evictsLeastRecentlyUsed() {
+        cache.precompute(Arrays.asList(a, b), "me");
+        cache.get(a, false);
+
+        cache.precompute(c, "me");
+
+        assertNotNull(cache.get(a, false));
+        assertNull(cache.get(b, false));
+        assertNotNull(cache.get(c, false));
+    }
+}
@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright 2016 stfalcon.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.stfalcon.chatkit.utils;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DateFormatterTest {
+
+    private final TimeZone defaultZone = TimeZone.getDefault();
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(defaultZone);
+        DateFormatter.onTimeZoneChanged();
+    }
+
+    @Test
+    public void isToday_includesWholeDayOnly() {
+        long todayStart = startOfToday().getTimeInMillis();
+
+        assertTrue(DateFormatter.isToday(new Date(todayStart)));
+        assertTrue(DateFormatter.isToday(new Date(todayStart + 24 * 60 * 60 * 1000L - 1)));
+        assertFalse(DateFormatter.isToday(new Date(todayStart - 1)));
+    }
+
+    @Test
+    public void isYesterday_includesWholeDayOnly() {
+        Calendar yesterday = startOfToday();
+        yesterday.add(Calendar.DAY_OF_MONTH, -1);
+        long todayStart = startOfToday().getTimeInMillis();
+
+        assertTrue(DateFormatter.isYesterday(yesterday.getTime()));
+        assertTrue(DateFormatter.isYesterday(new Date(todayStart - 1)));
+        assertFalse(DateFormatter.isYesterday(new Date(yesterday.getTimeInMillis() - 1)));
+        assertFalse(DateFormatter.isYesterday(new Date(todayStart)));
+    }
+
+    @Test
+    public void isCurrentYear_includesWholeYearOnly() {
+        Calendar year = startOfToday();
+        year.set(Calendar.DAY_OF_YEAR, 1);
+
+        assertTrue(DateFormatter.isCurrentYear(year.getTime()));
+        assertFalse(DateFormatter.isCurrentYear(new Date(year.getTimeInMillis() - 1)));
+        year.add(Calendar.YEAR, 1);
+        assertTrue(DateFormatter.isCurrentYear(new Date(year.getTimeInMillis() - 1)));
+        assertFalse(DateFormatter.isCurrentYear(year.getTime()));
+    }
+
+    @Test
+    public void isToday_afterTimeZoneChange_usesNewZone() {
+        TimeZone.setDefault(TimeZone.getTimeZone("GMT+12:00"));
+        DateFormatter.onTimeZoneChanged();
+        assertTrue(DateFormatter.isToday(startOfToday().getTime()));
+
+        TimeZone.setDefault(TimeZone.getTimeZone("GMT-12:00"));
+        DateFormatter.onTimeZoneChanged();
+        long todayStart = startOfToday().getTimeInMillis();
+        assertTrue(DateFormatter.isToday(new Date(todayStart)));
+        assertFalse(DateFormatter.isToday(new Date(todayStart - 1)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void isToday_ofNull_throws() {
+        DateFormatter.isToday((Date) null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void isYesterday_ofNull_throws() {
+        DateFormatter.isYesterday((Date) null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void isCurrentYear_ofNull_throws() {
+        DateFormatter.isCurrentYear((Date) null);
+    }
+
+    private static Calendar startOfToday() {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar;
+    }
+}
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright 2016 stfalcon.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.stfalcon.chatkit.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class FormattedDatesCacheTest {
+
+    private final FormattedDatesCache cache = new FormattedDatesCache(3);
+
+    @Test
+    public void put_evictsOldestEntry() {
+        cache.put(1, "1");
+        cache.put(2, "2");
+        cache.put(3, "3");
+        cache.put(4, "4");
+
+        assertNull(cache.get(1));
+        assertEquals("2", cache.get(2));
+        assertEquals("3", cache.get(3));
+        assertEquals("4", cache.get(4));
+    }
+
+    @Test
+    public void get_makesEntryNewest() {
+        cache.put(1, "1");
+        cache.put(2, "2");
+        cache.put(3, "3");
+        cache.get(1);
+        cache.put(4, "4");
+        cache.put(5, "5");
+
+        assertEquals("1", cache.get(1));
+        assertNull(cache.get(2));
+        assertNull(cache.get(3));
+    }
+
+    @Test
+    public void put_ofCachedKey_replacesValueAndMakesItNewest() {
+        cache.put(1, "1");
+        cache.put(2, "2");
+        cache.put(3, "3");
+        cache.put(1, "one");
+        cache.put(4, "4");
+
+        assertEquals("one", cache.get(1));
+        assertNull(cache.get(2));
+    }
+
+    @Test
+    public void evictedSlots_areReused() {
+        // slots are unlinked from their buckets before reuse, so stale keys aren't found
+        FormattedDatesCache cache = new FormattedDatesCache(2);
+        long step = 1L << 40;
+        for (long i = 0; i < 10; i++) {
+            cache.put(i * step, String.valueOf(i));
+        }
+
+        for (long i = 0; i < 8; i++) {
+            assertNull(cache.get(i * step));
+        }
+        assertEquals("8", cache.get(8 * step));
+        assertEquals("9", cache.get(9 * step));
+    }
+
+    @Test
+    public void clear_dropsAllEntries() {
+        cache.put(1, "1");
+        cache.put(2, "2");
+        cache.clear();
+
+        assertNull(cache.get(1));
+        cache.put(3, "3");
+        cache.put(4, "4");
+        cache.put(5, "5");
+        assertEquals("3", cache.get(3));
+    }
+}
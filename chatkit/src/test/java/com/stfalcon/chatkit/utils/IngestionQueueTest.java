@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright 2016 stfalcon.com
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+
+package com.stfalcon.chatkit.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class IngestionQueueTest {
+
+    private final RecordingTarget target = new RecordingTarget();
+    private final IngestionQueue<String> queue = new IngestionQueue<>(target);
+
+    @Before
+    public void setUp() {
+        // operations are applied only by explicit flush or drain
+        ShadowLooper.pauseMainLooper();
+    }
+
+    @Test
+    public void addsInRow_areAppliedAsOneBatch() {
+        queue.add("a=1");
+        queue.add("b=1");
+        queue.delete("c");
+        queue.add("d=1");
+        queue.flush();
+
+        assertEquals(Arrays.asList("add a=1 b=1", "delete c", "add d=1"), target.calls);
+    }
+
+    @Test
+    public void updateAfterAdd_isAppliedAsAdd() {
+        queue.add("a=1");
+        queue.update("a=2");
+        queue.flush();
+
+        assertEquals(Arrays.asList("add a=2"), target.calls);
+    }
+
+    @Test
+    public void updateAfterDelete_isDropped() {
+        queue.delete("a");
+        queue.update("a=2");
+        queue.flush();
+
+        assertEquals(Arrays.asList("delete a"), target.calls);
+    }
+
+    @Test
+    public void deleteAfterAddOrUpdate_wins() {
+        queue.add("a=1");
+        queue.update("b=1");
+        queue.delete("a");
+        queue.delete("b");
+        queue.flush();
+
+        assertEquals(Arrays.asList("delete a", "delete b"), target.calls);
+    }
+
+    @Test
+    public void addAfterDelete_isAppliedInPlaceOfLatestOperation() {
+        queue.delete("a");
+        queue.update("b=1");
+        queue.add("a=2");
+        queue.flush();
+
+        assertEquals(Arrays.asList("update b=1", "add a=2"), target.calls);
+    }
+
+    @Test
+    public void operationsOfDifferentIds_areNotCoalesced() {
+        queue.update("a=1");
+        queue.update("b=1");
+        queue.update("a=2");
+        queue.flush();
+
+        assertEquals(Arrays.asList("update b=1", "update a=2"), target.calls);
+    }
+
+    @Test
+    public void spentBudget_leavesRestForNextFrames() {
+        queue.update("a=1");
+        queue.delete("b");
+        queue.add("c=1");
+
+        queue.drain(0);
+        assertEquals(Arrays.asList("update a=1"), target.calls);
+
+        // operations queued meanwhile are coalesced with the pending ones
+        queue.update("c=2");
+        queue.drain(0);
+        assertEquals(Arrays.asList("update a=1", "delete b"), target.calls);
+
+        queue.drain(0);
+        assertEquals(Arrays.asList("update a=1", "delete b", "add c=2"), target.calls);
+    }
+
+    /*
+     * Items are "id=state" strings, calls are recorded as text.
+     * */
+    private static class RecordingTarget implements IngestionQueue.Target<String> {
+
+        private final List<String> calls = new ArrayList<>();
+
+        @Override
+        public String getId(String item) {
+            return item.substring(0, item.indexOf('='));
+        }
+
+        @Override
+        public void add(List<String> items) {
+            StringBuilder call = new StringBuilder("add");
+            for (String item : items) {
+                call.append(' ').append(item);
+            }
+            calls.add(call.toString());
+        }
+
+        @Override
+        public void update(String item) {
+            calls.add("update " + item);
+        }
+
+        @Override
+        public void delete(String id) {
+            calls.add("delete " + id);
+        }
+    }
+}